@@ -0,0 +1,221 @@
+package com.github.wcy123.maven.launcher.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.shared.artifact.ArtifactCoordinate;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolver;
+import org.apache.maven.shared.artifact.resolve.ArtifactResult;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.wcy123.maven.launcher.LoaderGraph;
+import com.github.wcy123.maven.launcher.ParallelArtifactResolver;
+import com.github.wcy123.maven.launcher.SharedUrlClassLoader;
+
+/**
+ * Class and resource lookups over a synthetic classpath, for each loader strategy.
+ *
+ * A hit looks up a class or a resource which exists, cycling through all the jars; classes are
+ * loaded once during the setup, so a class hit measures finding the defining loader, not defining
+ * the class. A miss looks up a name in a package which exists, and one in a package which does
+ * not. The <code>*Contended</code> variants run the hits on 8 threads.
+ *
+ * Run with <code>java -jar target/benchmarks.jar LookupBenchmark -prof gc</code> to get the
+ * allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+    @Param({"10", "100", "1000"})
+    public int jars;
+
+    @Param({"url", "shared", "maven"})
+    public String strategy;
+
+    private SyntheticClasspath classpath;
+    private URLClassLoader loader;
+    /**
+     * the loaders of the <code>maven</code> strategy.
+     */
+    private LoaderGraph graph;
+    private String[] hitClasses;
+    private String[] missClasses;
+    private String[] hitResources;
+    private String[] missResources;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        classpath = SyntheticClasspath.generate(jars);
+        loader = createLoader();
+        hitClasses = new String[jars];
+        missClasses = new String[jars * 2];
+        hitResources = new String[jars];
+        missResources = new String[jars * 2];
+        for (int i = 0; i < jars; ++i) {
+            hitClasses[i] = SyntheticClasspath.className(i, i % SyntheticClasspath.CLASSES_PER_JAR);
+            missClasses[2 * i] = "bench.p" + i + ".Missing";
+            missClasses[2 * i + 1] = "bench.none" + i + ".Missing";
+            hitResources[i] = SyntheticClasspath.resourceName(i);
+            missResources[2 * i] = "bench/p" + i + "/missing.txt";
+            missResources[2 * i + 1] = "bench/none" + i + "/missing.txt";
+            loader.loadClass(hitClasses[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        loader.close();
+        if (graph != null) {
+            graph.close();
+        }
+        classpath.delete();
+    }
+
+    private URLClassLoader createLoader() throws Exception {
+        switch (strategy) {
+            case "url":
+                return new URLClassLoader(classpath.getUrls());
+            case "shared":
+                // close the members with the group, trials must not see each other's loaders.
+                SharedUrlClassLoader.setMaxIdleLoaders(0);
+                return SharedUrlClassLoader.create(classpath.getUrls(),
+                        classpath.getIndexDirectory());
+            case "maven":
+                return createMavenClassLoader();
+            default:
+                throw new IllegalArgumentException("unknown strategy " + strategy);
+        }
+    }
+
+    /**
+     * the loader of the first jar, which depends on all the others, as a flat dependency tree
+     * resolves to.
+     */
+    private URLClassLoader createMavenClassLoader() throws Exception {
+        final List<File> files = classpath.getJars();
+        final List<DependencyNode> children = new ArrayList<>();
+        for (int i = 1; i < files.size(); ++i) {
+            children.add(node("jar" + i, files.get(i)));
+        }
+        final DependencyNode root = node("jar0", files.get(0));
+        root.setChildren(children);
+        graph = LoaderGraph.resolve(root, new ParallelArtifactResolver(null, new Resolved(), 1),
+                null);
+        return graph.open(classpath.getIndexDirectory());
+    }
+
+    private static DependencyNode node(String artifactId, File file) {
+        return new DefaultDependencyNode(new Dependency(
+                new DefaultArtifact("bench", artifactId, "jar", "1.0").setFile(file), "compile"));
+    }
+
+    /**
+     * The artifacts of the synthetic graph have their files already.
+     */
+    private static class Resolved implements ArtifactResolver {
+        @Override
+        public ArtifactResult resolveArtifact(ProjectBuildingRequest buildingRequest,
+                final Artifact artifact) {
+            return new ArtifactResult() {
+                @Override
+                public Artifact getArtifact() {
+                    return artifact;
+                }
+            };
+        }
+
+        @Override
+        public ArtifactResult resolveArtifact(ProjectBuildingRequest buildingRequest,
+                ArtifactCoordinate coordinate) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Where each benchmark thread is in the name arrays.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int length) {
+            final int ret = next;
+            next = ret + 1 == length ? 0 : ret + 1;
+            return ret;
+        }
+    }
+
+    @Benchmark
+    public Class<?> findClassHit(Cursor cursor) throws ClassNotFoundException {
+        return loader.loadClass(hitClasses[cursor.next(hitClasses.length)]);
+    }
+
+    @Benchmark
+    public Object findClassMiss(Cursor cursor) {
+        try {
+            return loader.loadClass(missClasses[cursor.next(missClasses.length)]);
+        } catch (ClassNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public URL findResourceHit(Cursor cursor) {
+        return loader.findResource(hitResources[cursor.next(hitResources.length)]);
+    }
+
+    @Benchmark
+    public URL findResourceMiss(Cursor cursor) {
+        return loader.findResource(missResources[cursor.next(missResources.length)]);
+    }
+
+    @Benchmark
+    public void findResources(Blackhole blackhole) throws IOException {
+        final Enumeration<URL> e = loader.findResources(SyntheticClasspath.SERVICE);
+        while (e.hasMoreElements()) {
+            blackhole.consume(e.nextElement());
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Class<?> findClassHitContended(Cursor cursor) throws ClassNotFoundException {
+        return findClassHit(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public URL findResourceHitContended(Cursor cursor) {
+        return findResourceHit(cursor);
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.wcy123.maven.launcher.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.wcy123.maven.launcher.AggregateResources;
+import com.github.wcy123.maven.launcher.SharedUrlClassLoader;
+
+/**
+ * The resource lookups of a startup which uses {@link java.util.ServiceLoader} or Spring
+ * factories a lot: <code>getResources</code> of a file which every jar has, of files which a few
+ * jars have, and of a file which no jar has, the last one being the most frequent in practice.
+ *
+ * The lookups go through <code>getResources</code>, as {@link java.util.ServiceLoader} does, so
+ * the parent loader is asked as well. The <code>aggregated</code> strategy answers them from the
+ * {@link AggregateResources} of the classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceLookupBenchmark {
+    @Param({"10", "100", "1000"})
+    public int jars;
+
+    @Param({"url", "shared", "aggregated"})
+    public String strategy;
+
+    private SyntheticClasspath classpath;
+    private URLClassLoader loader;
+    private String[] sparseServices;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        classpath = SyntheticClasspath.generate(jars);
+        if ("shared".equals(strategy) || "aggregated".equals(strategy)) {
+            SharedUrlClassLoader.setMaxIdleLoaders(0);
+            final AggregateResources aggregates = "aggregated".equals(strategy)
+                    ? AggregateResources.load(classpath.getIndexDirectory(), classpath.getJars())
+                    : null;
+            loader = SharedUrlClassLoader.create(classpath.getUrls(),
+                    classpath.getIndexDirectory(), 0, aggregates);
+        } else {
+            loader = new URLClassLoader(classpath.getUrls());
+        }
+        sparseServices = new String[SyntheticClasspath.SPARSE_SERVICES];
+        for (int i = 0; i < sparseServices.length; ++i) {
+            sparseServices[i] = SyntheticClasspath.sparseService(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        loader.close();
+        classpath.delete();
+    }
+
+    @Benchmark
+    public void everywhere(Blackhole blackhole) throws IOException {
+        consume(loader.getResources(SyntheticClasspath.SERVICE), blackhole);
+    }
+
+    @Benchmark
+    public void sparse(Blackhole blackhole) throws IOException {
+        final String name = sparseServices[next];
+        next = next + 1 == sparseServices.length ? 0 : next + 1;
+        consume(loader.getResources(name), blackhole);
+    }
+
+    @Benchmark
+    public void missing(Blackhole blackhole) throws IOException {
+        consume(loader.getResources("META-INF/services/bench.Missing"), blackhole);
+    }
+
+    /**
+     * reads every service file, as {@link java.util.ServiceLoader} parses them.
+     */
+    @Benchmark
+    public long readEverywhere() throws IOException {
+        long ret = 0;
+        final byte[] buffer = new byte[256];
+        final Enumeration<URL> e = loader.getResources(SyntheticClasspath.SERVICE);
+        while (e.hasMoreElements()) {
+            try (InputStream in = e.nextElement().openStream()) {
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    ret += n;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static void consume(Enumeration<URL> e, Blackhole blackhole) {
+        while (e.hasMoreElements()) {
+            blackhole.consume(e.nextElement());
+        }
+    }
+}
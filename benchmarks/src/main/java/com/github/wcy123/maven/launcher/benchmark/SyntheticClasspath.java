@@ -0,0 +1,132 @@
+package com.github.wcy123.maven.launcher.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A directory of generated jars. Jar <code>i</code> holds the package <code>bench/p{i}</code> with
+ * {@link #CLASSES_PER_JAR} empty classes, a resource <code>bench/p{i}/resource.txt</code> and a
+ * <code>META-INF/services/bench.Service</code> file, so that a service lookup touches every jar.
+ * It also has one of {@link #SPARSE_SERVICES} service files, which only every tenth jar shares.
+ */
+final class SyntheticClasspath {
+    static final int CLASSES_PER_JAR = 20;
+    static final String SERVICE = "META-INF/services/bench.Service";
+    static final int SPARSE_SERVICES = 10;
+
+    private final File directory;
+    private final List<File> jars;
+
+    private SyntheticClasspath(File directory, List<File> jars) {
+        this.directory = directory;
+        this.jars = jars;
+    }
+
+    static SyntheticClasspath generate(int jarCount) throws IOException {
+        final File directory = Files.createTempDirectory("launcher-bench").toFile();
+        final List<File> jars = new ArrayList<>(jarCount);
+        for (int i = 0; i < jarCount; ++i) {
+            final File jar = new File(directory, "jar" + i + ".jar");
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+                for (int c = 0; c < CLASSES_PER_JAR; ++c) {
+                    final String name = "bench/p" + i + "/C" + c;
+                    out.putNextEntry(new JarEntry(name + ".class"));
+                    out.write(emptyClass(name));
+                    out.closeEntry();
+                }
+                out.putNextEntry(new JarEntry("bench/p" + i + "/resource.txt"));
+                out.write(("resource of jar " + i).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+                out.putNextEntry(new JarEntry(SERVICE));
+                out.write(("bench.p" + i + ".C0\n").getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+                out.putNextEntry(new JarEntry(sparseService(i % SPARSE_SERVICES)));
+                out.write(("bench.p" + i + ".C1\n").getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+            jars.add(jar);
+        }
+        return new SyntheticClasspath(directory, jars);
+    }
+
+    static String className(int jar, int index) {
+        return "bench.p" + jar + ".C" + index;
+    }
+
+    static String sparseService(int index) {
+        return "META-INF/services/bench.Sparse" + index;
+    }
+
+    static String resourceName(int jar) {
+        return "bench/p" + jar + "/resource.txt";
+    }
+
+    List<File> getJars() {
+        return jars;
+    }
+
+    URL[] getUrls() throws IOException {
+        final URL[] ret = new URL[jars.size()];
+        for (int i = 0; i < ret.length; ++i) {
+            ret[i] = jars.get(i).toURI().toURL();
+        }
+        return ret;
+    }
+
+    File getIndexDirectory() {
+        return new File(directory, "index");
+    }
+
+    void delete() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @return a minimal class file for <code>public class name</code>, without any member.
+     */
+    private static byte[] emptyClass(String name) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(5);
+        out.writeByte(7);
+        out.writeShort(2);
+        out.writeByte(1);
+        out.writeUTF(name);
+        out.writeByte(7);
+        out.writeShort(4);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        out.writeShort(0x0021);
+        out.writeShort(1);
+        out.writeShort(3);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,676 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.repository.LocalArtifactRepository;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolver;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
+import org.apache.maven.shared.artifact.resolve.ArtifactResult;
+import org.apache.maven.shared.dependencies.DefaultDependableCoordinate;
+import org.apache.maven.shared.dependencies.resolve.DependencyResolver;
+import org.apache.maven.shared.dependencies.resolve.DependencyResolverException;
+import org.apache.maven.shared.utils.StringUtils;
+import org.apache.maven.shared.utils.cli.CommandLineException;
+import org.apache.maven.shared.utils.cli.CommandLineUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.DependencyNode;
+
+/**
+ * The repositories, the resolution of closures and the class loader settings shared by the goals
+ * which launch artifacts.
+ */
+public abstract class AbstractLauncherMojo
+        extends AbstractMojo {
+    private static final Pattern ALT_REPO_SYNTAX_PATTERN = Pattern.compile("(.+)::(.*)::(.+)");
+    /**
+     * the closure is resolved without a scope filter.
+     */
+    private static final String RESOLUTION_SCOPE = "all";
+    private static final Pattern UPDATE_POLICY_INTERVAL = Pattern.compile("interval:\\d+");
+
+    @Parameter(defaultValue = "${session}", required = true, readonly = true)
+    protected MavenSession session;
+
+    /**
+     *
+     */
+    @Component
+    protected ArtifactResolver artifactResolver;
+
+    /**
+     *
+     */
+    @Component
+    private DependencyResolver dependencyResolver;
+
+    /**
+     *
+     */
+    @Component
+    protected RepositorySystem repositorySystem;
+
+    /**
+     * Map that contains the layouts.
+     */
+    @Component(role = ArtifactRepositoryLayout.class)
+    private Map<String, ArtifactRepositoryLayout> repositoryLayouts;
+
+    @Component
+    private ProjectBuilder projectBuilder;
+
+    /**
+     * Repositories in the format id::[layout]::url or just url, separated by comma. ie.
+     * central::default::http://repo1.maven.apache.org/maven2,myrepo::::http://repo.acme.com,http://repo.acme2.com
+     */
+    @Parameter(property = "remoteRepositories")
+    private String remoteRepositories;
+
+    /**
+     *
+     */
+    @Parameter(defaultValue = "${project.remoteArtifactRepositories}", readonly = true,
+            required = true)
+    private List<ArtifactRepository> pomRemoteRepositories;
+
+    /**
+     *
+     */
+    @Parameter
+    private LocalArtifactRepository localArtifactRepository;
+
+    /**
+     * Skip plugin execution completely.
+     *
+     * @since 2.7
+     */
+    @Parameter(property = "mdep.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * Keep an index of the entries of each jar under the local repository, so that later launches
+     * do not scan the jars again.
+     */
+    @Parameter(property = "launcher.indexCache", defaultValue = "true")
+    protected boolean indexCache = true;
+
+    /**
+     * Keep the content of the aggregate resources of the closure, e.g.
+     * <code>META-INF/services/*</code> and <code>META-INF/spring.factories</code>, next to the
+     * resolved closure, and answer their lookups from memory instead of from every jar.
+     */
+    @Parameter(property = "launcher.aggregateCache", defaultValue = "true")
+    protected boolean aggregateCache = true;
+
+    /**
+     * Resolve the closure from the local repository first, without asking any remote repository:
+     * the dependencies are collected from the local poms and the artifacts are taken from a
+     * manifest of the local repository, which records the file and the checksum of each artifact
+     * a launch used. Only what is not local yet is downloaded.
+     */
+    @Parameter(property = "launcher.offline", defaultValue = "false")
+    private boolean offline;
+
+    /**
+     * How often the repositories of {@link #remoteRepositories} are checked for updates:
+     * <code>always</code>, <code>daily</code>, <code>never</code> or
+     * <code>interval:minutes</code>.
+     */
+    @Parameter(property = "launcher.updatePolicy",
+            defaultValue = ArtifactRepositoryPolicy.UPDATE_POLICY_DAILY)
+    private String updatePolicy = ArtifactRepositoryPolicy.UPDATE_POLICY_DAILY;
+
+    /**
+     * Update policies by repository id, separated by comma, e.g.
+     * <code>central=never,snapshots=interval:60</code>. They override {@link #updatePolicy} and
+     * the policies of the repositories of the project.
+     */
+    @Parameter(property = "launcher.repositoryPolicies")
+    private String repositoryPolicies;
+
+    /**
+     * Resolve the dependencies again even if the closure of a fixed version is cached.
+     */
+    @Parameter(property = "launcher.refresh", defaultValue = "false")
+    private boolean refresh;
+
+    /**
+     * Number of threads resolving and downloading the artifacts of the closure, once the dependency
+     * graph is collected. 1 resolves the closure in a single pass.
+     */
+    @Parameter(property = "launcher.resolveThreads", defaultValue = "4")
+    protected int resolveThreads = 4;
+
+    /**
+     * Maximum number of jar loaders kept warm in this JVM once no launch uses them.
+     */
+    @Parameter(property = "launcher.maxIdleLoaders", defaultValue = "256")
+    protected int maxIdleLoaders = SharedUrlClassLoader.DEFAULT_MAX_IDLE_LOADERS;
+
+    /**
+     * Read class files from memory mapped jars instead of {@link JarFile}, to lower the allocation
+     * rate of the class loading burst at startup.
+     */
+    @Parameter(property = "launcher.mmap", defaultValue = "false")
+    protected boolean mmap;
+
+    /**
+     * How <code>main</code> runs: <code>platform</code> on a thread of its own, or
+     * <code>virtual</code> on a virtual thread. A JVM without virtual threads, i.e. before Java 21,
+     * runs it on a platform thread.
+     */
+    @Parameter(property = "launcher.threadModel", defaultValue = MainThreads.PLATFORM)
+    private String threadModel = MainThreads.PLATFORM;
+
+    /**
+     * Record which classes each launch loads, in which order and from which jar, per closure. The
+     * next launch of the same closure looks each recorded class up in its jar first.
+     */
+    @Parameter(property = "launcher.profile", defaultValue = "false")
+    private boolean profile;
+
+    /**
+     * Number of threads which load and link the classes of the profile while <code>main</code>
+     * initializes, 0 for none. Records the profile as {@link #profile} does.
+     */
+    @Parameter(property = "launcher.warmUpThreads", defaultValue = "0")
+    private int warmUpThreads;
+
+    /**
+     * Load and link the classes of the profile with a fork/join pool before <code>main</code> is
+     * invoked, instead of next to it. Records the profile as {@link #profile} does.
+     */
+    @Parameter(property = "launcher.preload", defaultValue = "false")
+    private boolean preload;
+
+    /**
+     * @return the repositories of the project followed by {@link #remoteRepositories}, with the
+     *         update policies of {@link #repositoryPolicies}.
+     */
+    protected List<ArtifactRepository> getRepositories() throws MojoFailureException {
+        checkUpdatePolicy("launcher.updatePolicy", updatePolicy);
+        final Map<String, String> policies = parseRepositoryPolicies();
+        ArtifactRepositoryPolicy policy = new ArtifactRepositoryPolicy(true, updatePolicy,
+                ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN);
+
+        List<ArtifactRepository> repoList = new ArrayList<ArtifactRepository>();
+
+        if (pomRemoteRepositories != null) {
+            for (ArtifactRepository repo : pomRemoteRepositories) {
+                repoList.add(withUpdatePolicy(repo, policies.get(repo.getId())));
+            }
+        }
+
+        if (remoteRepositories != null) {
+            // Use the same format as in the deploy plugin id::layout::url
+            List<String> repos = Arrays.asList(StringUtils.split(remoteRepositories, ","));
+            for (String repo : repos) {
+                final ArtifactRepository parsed = parseRepository(repo, policy);
+                repoList.add(withUpdatePolicy(parsed, policies.get(parsed.getId())));
+            }
+        }
+        return repoList;
+    }
+
+    private Map<String, String> parseRepositoryPolicies() throws MojoFailureException {
+        final Map<String, String> ret = new HashMap<>();
+        if (repositoryPolicies == null) {
+            return ret;
+        }
+        for (String token : StringUtils.split(repositoryPolicies, ",")) {
+            final int i = token.indexOf('=');
+            if (i <= 0) {
+                throw new MojoFailureException("Invalid launcher.repositoryPolicies " + token
+                        + ", use id=policy");
+            }
+            final String policy = token.substring(i + 1).trim();
+            checkUpdatePolicy("launcher.repositoryPolicies", policy);
+            ret.put(token.substring(0, i).trim(), policy);
+        }
+        return ret;
+    }
+
+    private static void checkUpdatePolicy(String name, String policy)
+            throws MojoFailureException {
+        if (ArtifactRepositoryPolicy.UPDATE_POLICY_ALWAYS.equals(policy)
+                || ArtifactRepositoryPolicy.UPDATE_POLICY_DAILY.equals(policy)
+                || ArtifactRepositoryPolicy.UPDATE_POLICY_NEVER.equals(policy)
+                || UPDATE_POLICY_INTERVAL.matcher(policy).matches()) {
+            return;
+        }
+        throw new MojoFailureException("Invalid " + name + " " + policy
+                + ", use always, daily, never or interval:minutes");
+    }
+
+    /**
+     * @return a copy of <code>repo</code> which is checked for updates as <code>policy</code>
+     *         says, <code>repo</code> itself if <code>policy</code> is <code>null</code>.
+     */
+    private static ArtifactRepository withUpdatePolicy(ArtifactRepository repo, String policy) {
+        if (policy == null) {
+            return repo;
+        }
+        final ArtifactRepositoryPolicy snapshots = repo.getSnapshots();
+        final ArtifactRepositoryPolicy releases = repo.getReleases();
+        final ArtifactRepository ret = new MavenArtifactRepository(repo.getId(), repo.getUrl(),
+                repo.getLayout(),
+                new ArtifactRepositoryPolicy(snapshots.isEnabled(), policy,
+                        snapshots.getChecksumPolicy()),
+                new ArtifactRepositoryPolicy(releases.isEnabled(), policy,
+                        releases.getChecksumPolicy()));
+        ret.setAuthentication(repo.getAuthentication());
+        ret.setProxy(repo.getProxy());
+        return ret;
+    }
+
+    protected ProjectBuildingRequest newBuildingRequest(List<ArtifactRepository> repoList) {
+        ProjectBuildingRequest buildingRequest =
+                new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+        buildingRequest.setProject(session.getCurrentProject());
+        buildingRequest.setRemoteRepositories(repoList);
+        return buildingRequest;
+    }
+
+    /**
+     * Sets <code>coordinate</code> from <code>artifact</code>, of the form
+     * groupId:artifactId:version[:packaging[:classifier]].
+     */
+    protected static void parseArtifact(String artifact, DefaultDependableCoordinate coordinate)
+            throws MojoFailureException {
+        String[] tokens = StringUtils.split(artifact, ":");
+        if (tokens.length < 3 || tokens.length > 5) {
+            throw new MojoFailureException(
+                    "Invalid artifact, you must specify groupId:artifactId:version[:packaging[:classifier]] "
+                            + artifact);
+        }
+        coordinate.setGroupId(tokens[0]);
+        coordinate.setArtifactId(tokens[1]);
+        coordinate.setVersion(tokens[2]);
+        if (tokens.length >= 4) {
+            coordinate.setType(tokens[3]);
+        }
+        if (tokens.length == 5) {
+            coordinate.setClassifier(tokens[4]);
+        }
+    }
+
+    /**
+     * @return the files of the transitive closure of <code>coordinate</code>, in classpath order.
+     */
+    protected List<File> resolveClosure(DefaultDependableCoordinate coordinate,
+            ProjectBuildingRequest buildingRequest, List<ArtifactRepository> repoList,
+            LaunchReport launchReport) throws DependencyResolverException,
+            DependencyCollectionException, ArtifactResolverException {
+        launchReport.begin("resolve");
+        final ResolutionCache resolutionCache =
+                new ResolutionCache(new File(getLauncherDirectory(), "resolved"));
+        final String key = ResolutionCache.toKey(coordinate, repoList, RESOLUTION_SCOPE);
+        final boolean cacheable = ResolutionCache.isCacheable(coordinate);
+        if (cacheable && !refresh) {
+            final List<File> files = resolutionCache.load(key);
+            if (files != null) {
+                getLog().info("Using cached closure of " + coordinate);
+                return files;
+            }
+        }
+
+        getLog().info("Resolving " + coordinate + " with transitive dependencies");
+        final ParallelArtifactResolver resolver = new ParallelArtifactResolver(repositorySystem,
+                artifactResolver, Math.max(1, resolveThreads));
+        final List<Artifact> artifacts = new ArrayList<>();
+        // the collected graph, null when the single pass resolved the closure.
+        DependencyNode root = null;
+        if (offline) {
+            launchReport.begin("collect");
+            root = collectLocally(resolver, coordinate, buildingRequest);
+            launchReport.begin("download");
+            artifacts.addAll(resolveLocally(resolver, coordinate,
+                    ParallelArtifactResolver.toArtifacts(root), buildingRequest));
+        } else if (resolveThreads > 1) {
+            launchReport.begin("collect");
+            root = resolver.collectClosure(buildingRequest, coordinate);
+            launchReport.begin("download");
+            artifacts.addAll(resolver.resolve(buildingRequest,
+                    ParallelArtifactResolver.toArtifacts(root)));
+        } else {
+            final Iterable<ArtifactResult> artifactResults =
+                    dependencyResolver.resolveDependencies(buildingRequest, coordinate, null);
+            for (ArtifactResult artifactResult : artifactResults) {
+                Artifact resolved = artifactResult.getArtifact();
+                if (resolved.getFile() == null) {
+                    resolved = artifactResolver.resolveArtifact(buildingRequest, resolved)
+                            .getArtifact();
+                }
+                artifacts.add(resolved);
+            }
+        }
+        List<File> files = new ArrayList<>();
+        boolean fixed = cacheable;
+        for (Artifact resolved : artifacts) {
+            getLog().info("artifacts " + resolved);
+            fixed = fixed && !resolved.isSnapshot();
+            files.add(resolved.getFile());
+        }
+        if (fixed && !files.isEmpty()) {
+            if (root == null) {
+                // the poms are local by now, collecting the graph again reads them only.
+                root = resolver.collectClosure(buildingRequest, coordinate);
+            }
+            if (ResolutionCache.isCacheable(root)) {
+                resolutionCache.store(key, coordinate.toString(), files);
+            } else {
+                getLog().info("Not caching the closure of " + coordinate
+                        + ", a dependency asks for a version range or a meta version");
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Collects the dependency graph of <code>coordinate</code> from the local repository, see
+     * {@link #offline}, and from the repositories of <code>buildingRequest</code> if a pom is
+     * missing.
+     */
+    private DependencyNode collectLocally(ParallelArtifactResolver resolver,
+            DefaultDependableCoordinate coordinate, ProjectBuildingRequest buildingRequest)
+            throws DependencyCollectionException {
+        try {
+            return resolver.collectClosure(toOffline(buildingRequest), coordinate);
+        } catch (DependencyCollectionException e) {
+            getLog().info("Some poms of " + coordinate + " are not local, collecting from the "
+                    + "repositories");
+            return resolver.collectClosure(buildingRequest, coordinate);
+        }
+    }
+
+    /**
+     * Resolves the <code>collected</code> closure of <code>coordinate</code> from the local
+     * repository, see {@link #offline}, and asks the repositories of
+     * <code>buildingRequest</code> only for what is missing.
+     *
+     * @return the resolved artifacts, in classpath order.
+     */
+    private List<Artifact> resolveLocally(ParallelArtifactResolver resolver,
+            DefaultDependableCoordinate coordinate, List<Artifact> collected,
+            ProjectBuildingRequest buildingRequest) throws ArtifactResolverException {
+        final ProjectBuildingRequest offlineRequest = toOffline(buildingRequest);
+        final LocalManifest manifest =
+                LocalManifest.load(new File(getLauncherDirectory(), "local-manifest.txt"));
+        final List<Artifact> missing = new ArrayList<>();
+        for (Artifact artifact : collected) {
+            final File file = manifest.get(artifact);
+            if (file != null) {
+                artifact.setFile(file);
+                artifact.setResolved(true);
+            } else {
+                missing.add(artifact);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Artifact> resolved;
+            try {
+                resolved = resolver.resolve(offlineRequest, missing);
+            } catch (ArtifactResolverException e) {
+                getLog().info("Some artifacts of " + coordinate + " are not local, downloading");
+                resolved = resolver.resolve(buildingRequest, missing);
+            }
+            for (int i = 0; i < missing.size(); ++i) {
+                missing.get(i).setFile(resolved.get(i).getFile());
+                missing.get(i).setResolved(true);
+            }
+        }
+        for (Artifact artifact : collected) {
+            try {
+                manifest.put(artifact);
+            } catch (IOException e) {
+                getLog().warn("cannot record " + artifact + " in the local manifest", e);
+            }
+        }
+        manifest.store();
+        return collected;
+    }
+
+    private static ProjectBuildingRequest toOffline(ProjectBuildingRequest buildingRequest) {
+        final DefaultRepositorySystemSession offlineSession =
+                new DefaultRepositorySystemSession(buildingRequest.getRepositorySession());
+        offlineSession.setOffline(true);
+        final ProjectBuildingRequest ret = new DefaultProjectBuildingRequest(buildingRequest);
+        ret.setRepositorySession(offlineSession);
+        return ret;
+    }
+
+    protected void checkThreadModel() throws MojoFailureException {
+        if (!MainThreads.isThreadModel(threadModel)) {
+            throw new MojoFailureException("Invalid launcher.threadModel " + threadModel
+                    + ", use " + MainThreads.PLATFORM + " or " + MainThreads.VIRTUAL);
+        }
+        if (MainThreads.VIRTUAL.equals(threadModel) && !MainThreads.supportsVirtualThreads()) {
+            getLog().warn("virtual threads need a JDK 21 or later, running main on a platform "
+                    + "thread");
+        }
+    }
+
+    /**
+     * @return the thread which runs <code>main</code>, as {@link #threadModel} asks.
+     */
+    protected Thread newMainThread(String name, Runnable task) {
+        return MainThreads.newThread(threadModel, name, task);
+    }
+
+    /**
+     * @return the manifest metadata of <code>jar</code>, kept next to the resolved closures.
+     */
+    protected ManifestMetadata loadMetadata(File jar) throws IOException {
+        return ManifestMetadata.load(new File(getLauncherDirectory(), "resolved"), jar);
+    }
+
+    /**
+     * @param name what <code>value</code> is, for the error message
+     * @param value words separated by white space, a word which has white space in it is quoted,
+     *        e.g. <code>--title "two words"</code>
+     * @return the words of <code>value</code>, without their quotes, empty if <code>value</code>
+     *         is <code>null</code>.
+     * @throws MojoFailureException if a quote is not closed
+     */
+    protected static List<String> splitArguments(String name, String value)
+            throws MojoFailureException {
+        if (value == null || value.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            return new ArrayList<>(Arrays.asList(CommandLineUtils.translateCommandline(value)));
+        } catch (CommandLineException e) {
+            throw new MojoFailureException("cannot split " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param files the closure, the application jar first
+     * @param metadata the manifest metadata of the application jar
+     * @return the jars of the group which launches <code>files</code>, in classpath order: the
+     *         <code>Class-Path</code> of the application jar right after it, a jar of the closure
+     *         which is in it already is left out. the aggregates and the profile of the launch are
+     *         kept for these jars.
+     */
+    protected static List<File> toMemberFiles(List<File> files, ManifestMetadata metadata) {
+        if (files.isEmpty() || NestedJars.isFatJar(metadata.getManifest())) {
+            return files;
+        }
+        final List<File> classPath = metadata.getClassPath(files.get(0));
+        if (classPath.isEmpty()) {
+            return files;
+        }
+        final Set<File> ret = new LinkedHashSet<>();
+        ret.add(files.get(0));
+        ret.addAll(classPath);
+        ret.addAll(files);
+        return new ArrayList<>(ret);
+    }
+
+    /**
+     * @param files the jars of the group, see {@link #toMemberFiles}
+     * @param metadata the manifest metadata of the first of <code>files</code>, the application
+     *        jar
+     * @return the members of the group: the classes and the nested jars of a fat application jar
+     *         in place of the jar, see {@link NestedJars}, the URL of every other jar.
+     */
+    protected static URL[] toMembers(List<File> files, ManifestMetadata metadata)
+            throws IOException {
+        final List<URL> ret = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); ++i) {
+            if (i == 0 && NestedJars.isFatJar(metadata.getManifest())) {
+                ret.addAll(NestedJars.getMembers(files.get(0), metadata.getManifest()));
+            } else {
+                ret.add(files.get(i).toURI().toURL());
+            }
+        }
+        return ret.toArray(new URL[0]);
+    }
+
+    /**
+     * Warns that the packages the application jar opens stay closed in this JVM, they can only
+     * be opened when a JVM starts.
+     */
+    protected void checkAddOpens(ManifestMetadata metadata, File jar) {
+        if (!metadata.getAddOpens().isEmpty() && Utils.featureVersion() >= 9) {
+            getLog().warn("Add-Opens " + metadata.getAddOpens() + " of " + jar.getName()
+                    + " is applied by launcher.fork only");
+        }
+    }
+
+    /**
+     * @return the profile of the previous launch of <code>files</code>, or <code>null</code> if
+     *         there is none or profiles are not used.
+     */
+    protected ClassProfile loadProfile(List<File> files) {
+        return isProfiling() ? ClassProfile.load(getProfileDirectory(), files) : null;
+    }
+
+    /**
+     * Loads the classes of <code>classProfile</code> before <code>main</code> if {@link #preload}
+     * is set, or starts loading them next to it.
+     *
+     * @return the warm-up running next to <code>main</code>, or <code>null</code>.
+     */
+    protected ClassWarmUp startWarmUp(ClassLoader classLoader, ClassProfile classProfile,
+            LaunchReport launchReport) {
+        if (classProfile == null) {
+            return null;
+        }
+        final List<String> names = classProfile.getClassNames();
+        if (preload) {
+            launchReport.begin("preload");
+            final int loaded = ClassWarmUp.preload(classLoader, names,
+                    Runtime.getRuntime().availableProcessors());
+            getLog().info("preloaded " + loaded + " of " + names.size() + " classes");
+            return null;
+        }
+        return warmUpThreads > 0 ? ClassWarmUp.start(classLoader, names, warmUpThreads) : null;
+    }
+
+    /**
+     * Stops <code>warmUp</code> and records the profile of the launch of <code>files</code>,
+     * <code>null</code> not to record it, e.g. for a fat jar whose classes are in none of them.
+     */
+    protected void finishWarmUp(ClassWarmUp warmUp, SharedUrlClassLoader classLoader,
+            List<File> files) {
+        if (warmUp != null) {
+            warmUp.close();
+            getLog().info("warmed up " + warmUp.getLoaded() + " of " + warmUp.getSize()
+                    + " classes");
+        }
+        final Map<String, URL> classes = classLoader.getFoundClasses();
+        // a launch which did not run keeps the profile of the previous one.
+        if (isProfiling() && files != null && !classes.isEmpty()) {
+            ClassProfile.store(getProfileDirectory(), files, classes);
+        }
+    }
+
+    /**
+     * @return true if the classes a launch loads are recorded for the next launch.
+     */
+    protected boolean isProfiling() {
+        return profile || preload || warmUpThreads > 0;
+    }
+
+    /**
+     * @return where the profiles of closures are kept, or <code>null</code> if launches are not
+     *         profiled.
+     */
+    protected File getProfileDirectory() {
+        return isProfiling() ? new File(getLauncherDirectory(), "profiles") : null;
+    }
+
+    ArtifactRepository parseRepository(String repo, ArtifactRepositoryPolicy policy)
+            throws MojoFailureException {
+        // if it's a simple url
+        String id = "temp";
+        ArtifactRepositoryLayout layout = getLayout("default");
+        String url = repo;
+
+        // if it's an extended repo URL of the form id::layout::url
+        if (repo.contains("::")) {
+            Matcher matcher = ALT_REPO_SYNTAX_PATTERN.matcher(repo);
+            if (!matcher.matches()) {
+                throw new MojoFailureException(repo, "Invalid syntax for repository: " + repo,
+                        "Invalid syntax for repository. Use \"id::layout::url\" or \"URL\".");
+            }
+
+            id = matcher.group(1).trim();
+            if (!StringUtils.isEmpty(matcher.group(2))) {
+                layout = getLayout(matcher.group(2).trim());
+            }
+            url = matcher.group(3).trim();
+        }
+        return new MavenArtifactRepository(id, url, layout, policy, policy);
+    }
+
+    private ArtifactRepositoryLayout getLayout(String id)
+            throws MojoFailureException {
+        ArtifactRepositoryLayout layout = repositoryLayouts.get(id);
+
+        if (layout == null) {
+            throw new MojoFailureException(id, "Invalid repository layout",
+                    "Invalid repository layout: " + id);
+        }
+
+        return layout;
+    }
+
+    /**
+     * @return the directory under the local repository where the launcher keeps its caches.
+     */
+    protected File getLauncherDirectory() {
+        return new File(session.getLocalRepository().getBasedir(), ".launcher");
+    }
+
+    protected boolean isSkip() {
+        return skip;
+    }
+}
@@ -0,0 +1,233 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The content of the aggregate resources of a closure, e.g. <code>META-INF/services/*</code> or
+ * <code>META-INF/spring.factories</code>, which frameworks look up in every jar at startup.
+ *
+ * The resources are read from all the jars once and kept next to the resolved closure, so that a
+ * lookup is answered from memory. Each jar still contributes a resource of its own, because the
+ * readers of such files merge them with their own rules, e.g. Spring loads each
+ * <code>spring.factories</code> as separate properties. The URLs look like the ones of the jars,
+ * <code>jar:file:...!/name</code>, so they compare equal to them, but they are read from memory.
+ *
+ * The file is discarded as soon as a jar of the closure changes.
+ */
+public class AggregateResources {
+    private static final int MAGIC = 0x4c414752;
+    private static final int VERSION = 1;
+    private static final String[] AGGREGATE_FILES = {"META-INF/spring.factories",
+            "META-INF/spring.handlers", "META-INF/spring.schemas", "META-INF/spring.tooling",
+            "META-INF/spring-autoconfigure-metadata.properties"};
+    private static final String[] AGGREGATE_DIRECTORIES =
+            {"META-INF/services/", "META-INF/spring/"};
+
+    private final Map<String, List<URL>> resources;
+
+    private AggregateResources(Map<String, List<URL>> resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * @return true if <code>name</code> is an aggregate resource, whose lookups must be answered
+     *         by {@link #get}.
+     */
+    public static boolean isAggregate(String name) {
+        for (String file : AGGREGATE_FILES) {
+            if (file.equals(name)) {
+                return true;
+            }
+        }
+        for (String directory : AGGREGATE_DIRECTORIES) {
+            if (name.length() > directory.length() && name.startsWith(directory)
+                    && name.indexOf('/', directory.length()) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param directory where the aggregate resources of closures are kept
+     * @param closure the files of the closure, in classpath order
+     * @return the aggregate resources of the closure, read from the jars if they are not kept yet
+     *         or one of the jars changed, or <code>null</code> if a member of the closure is not a
+     *         jar.
+     */
+    public static AggregateResources load(File directory, List<File> closure) throws IOException {
+        for (File file : closure) {
+            if (!file.isFile()) {
+                return null;
+            }
+        }
+        final File file = new File(directory, ResolutionCache.toKey(closure) + ".agg");
+        AggregateResources ret = file.isFile() ? read(file, closure) : null;
+        if (ret == null) {
+            ret = scan(closure, file);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the resources of each jar named <code>name</code> in classpath order, or
+     *         <code>null</code> if <code>name</code> is not an aggregate resource.
+     */
+    public List<URL> get(String name) {
+        if (!isAggregate(name)) {
+            return null;
+        }
+        final List<URL> ret = resources.get(name);
+        return ret == null ? Collections.<URL>emptyList() : ret;
+    }
+
+    private static AggregateResources scan(List<File> closure, File file) throws IOException {
+        final Map<String, List<URL>> resources = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        final List<Integer> jars = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < closure.size(); ++i) {
+            try (ZipFile zip = new ZipFile(closure.get(i))) {
+                final Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || !isAggregate(entry.getName())) {
+                        continue;
+                    }
+                    final byte[] bytes;
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        bytes = readFully(in);
+                    }
+                    names.add(entry.getName());
+                    jars.add(i);
+                    contents.add(bytes);
+                    add(resources, entry.getName(), closure.get(i), bytes);
+                }
+            }
+        }
+        write(file, closure, names, jars, contents);
+        return new AggregateResources(resources);
+    }
+
+    private static AggregateResources read(File file, List<File> closure) {
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!Utils.readHeader(in, closure, MAGIC, VERSION)) {
+                return null;
+            }
+            final Map<String, List<URL>> resources = new HashMap<>();
+            final int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                final String name = in.readUTF();
+                final int jar = in.readInt();
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                add(resources, name, closure.get(jar), bytes);
+            }
+            return new AggregateResources(resources);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static void write(File file, final List<File> closure, final List<String> names,
+            final List<Integer> jars, final List<byte[]> contents) {
+        Utils.writeCache(file, new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream stream) throws IOException {
+                final DataOutputStream out = new DataOutputStream(stream);
+                Utils.writeHeader(out, closure, MAGIC, VERSION);
+                out.writeInt(names.size());
+                for (int i = 0; i < names.size(); ++i) {
+                    out.writeUTF(names.get(i));
+                    out.writeInt(jars.get(i));
+                    out.writeInt(contents.get(i).length);
+                    out.write(contents.get(i));
+                }
+                out.flush();
+            }
+        });
+    }
+
+    private static void add(Map<String, List<URL>> resources, String name, File jar,
+            byte[] bytes) throws MalformedURLException {
+        List<URL> urls = resources.get(name);
+        if (urls == null) {
+            urls = new ArrayList<>(1);
+            resources.put(name, urls);
+        }
+        urls.add(new URL("jar", "", -1, jar.toURI() + "!/" + name, new MemoryHandler(bytes)));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        int n = 0;
+        for (int r = in.read(buffer); r >= 0; r = in.read(buffer, n, buffer.length - n)) {
+            n += r;
+            if (n == buffer.length) {
+                final byte[] bigger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, bigger, 0, n);
+                buffer = bigger;
+            }
+        }
+        final byte[] ret = new byte[n];
+        System.arraycopy(buffer, 0, ret, 0, n);
+        return ret;
+    }
+
+    /**
+     * Opens a resource kept in memory.
+     */
+    private static class MemoryHandler extends URLStreamHandler {
+        private final byte[] bytes;
+
+        private MemoryHandler(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url) {
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(bytes);
+                }
+
+                @Override
+                public int getContentLength() {
+                    return bytes.length;
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    return bytes.length;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
+import org.apache.maven.shared.dependencies.DefaultDependableCoordinate;
+import org.apache.maven.shared.dependencies.resolve.DependencyResolverException;
+import org.eclipse.aether.collection.DependencyCollectionException;
+
+/**
+ * Goal which reports the classes and packages which several jars of the closure of an artifact
+ * contain, and the jar each duplicate class is loaded from, without launching it.
+ */
+@Mojo(name = "analyze", requiresProject = false)
+public class AnalyzeMojo
+        extends AbstractLauncherMojo {
+    /**
+     * A string of the form groupId:artifactId:version[:packaging[:classifier]].
+     */
+    @Parameter(property = "artifact")
+    private String artifact;
+
+    /**
+     * Fail the build if a class is in more than one jar of the closure.
+     */
+    @Parameter(property = "launcher.failOnDuplicates", defaultValue = "false")
+    private boolean failOnDuplicates;
+
+    @Override
+    public void execute()
+            throws MojoExecutionException, MojoFailureException {
+        if (isSkip()) {
+            getLog().info("Skipping plugin execution");
+            return;
+        }
+        if (artifact == null) {
+            throw new MojoFailureException("You must specify an artifact, "
+                    + "e.g. -Dartifact=org.apache.maven.plugins:maven-downloader-plugin:1.0");
+        }
+        final DefaultDependableCoordinate coordinate = new DefaultDependableCoordinate();
+        coordinate.setType("jar");
+        parseArtifact(artifact, coordinate);
+        final List<ArtifactRepository> repoList = getRepositories();
+        final LaunchReport report = new LaunchReport(coordinate.toString(), "analyze");
+        final ClasspathAnalysis analysis;
+        final List<File> files;
+        try {
+            files = resolveClosure(coordinate, newBuildingRequest(repoList), repoList, report);
+            report.begin("analyze");
+            analysis = ClasspathAnalysis.analyze(files,
+                    indexCache ? new File(getLauncherDirectory(), "index") : null,
+                    Runtime.getRuntime().availableProcessors());
+            report.end();
+        } catch (DependencyResolverException e) {
+            throw new MojoExecutionException("Couldn't download artifact: " + e.getMessage(), e);
+        } catch (DependencyCollectionException e) {
+            throw new MojoExecutionException("Couldn't collect dependencies: " + e.getMessage(), e);
+        } catch (ArtifactResolverException e) {
+            getLog().error("cannot resolve artifact", e);
+            throw new MojoFailureException("cannot resolve artifact");
+        } catch (IOException e) {
+            getLog().error("cannot index the closure", e);
+            throw new MojoFailureException("cannot index the closure");
+        }
+
+        for (ClasspathAnalysis.SplitPackage splitPackage : analysis.getSplitPackages()) {
+            getLog().warn("split package " + splitPackage.getName() + ": "
+                    + toNames(splitPackage.getJars()));
+        }
+        for (ClasspathAnalysis.DuplicateClass duplicate : analysis.getDuplicateClasses()) {
+            getLog().warn("duplicate class " + duplicate.getName() + ": "
+                    + duplicate.getWinner().getName() + " shadows "
+                    + toNames(duplicate.getShadowed()));
+        }
+        getLog().info(files.size() + " jars, " + analysis.getPackages() + " packages, "
+                + analysis.getSplitPackages().size() + " split packages, "
+                + analysis.getDuplicateClasses().size() + " duplicate classes");
+        getLog().info("analysis phases: " + report);
+        if (failOnDuplicates && !analysis.getDuplicateClasses().isEmpty()) {
+            throw new MojoFailureException(analysis.getDuplicateClasses().size()
+                    + " classes are in more than one jar of " + coordinate);
+        }
+    }
+
+    private static String toNames(List<File> jars) {
+        final List<String> ret = new ArrayList<>(jars.size());
+        for (File jar : jars) {
+            ret.add(jar.getName());
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.wcy123.maven.launcher;
+
+/**
+ * A bloom filter over entry names. {@link #mightContain} never returns false for a name which was
+ * added, so a negative answer proves that no jar of the group has the entry.
+ */
+class BloomFilter {
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASHES = 3;
+
+    private final long[] bits;
+    private final int mask;
+
+    /**
+     * @param hashes {@link String#hashCode()} of the names to add
+     * @param count number of valid elements in <code>hashes</code>
+     */
+    BloomFilter(int[] hashes, int count) {
+        int size = 64;
+        while (size < count * BITS_PER_ENTRY && size < (1 << 30)) {
+            size <<= 1;
+        }
+        bits = new long[size >>> 6];
+        mask = size - 1;
+        for (int i = 0; i < count; ++i) {
+            add(hashes[i]);
+        }
+    }
+
+    /**
+     * @param bits the bits of a filter, as returned by {@link #getBits()}
+     */
+    BloomFilter(long[] bits) {
+        if (bits.length == 0 || Integer.bitCount(bits.length) != 1) {
+            throw new IllegalArgumentException("bits must be a power of two: " + bits.length);
+        }
+        this.bits = bits;
+        this.mask = (bits.length << 6) - 1;
+    }
+
+    long[] getBits() {
+        return bits.clone();
+    }
+
+    boolean mightContain(String name) {
+        final int hash = name.hashCode();
+        final int h2 = mix(hash);
+        for (int i = 0; i < HASHES; ++i) {
+            final int bit = (hash + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(int hash) {
+        final int h2 = mix(hash);
+        for (int i = 0; i < HASHES; ++i) {
+            final int bit = (hash + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * the second hash of double hashing, an odd number so that the probes do not collapse.
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9e3779b9;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
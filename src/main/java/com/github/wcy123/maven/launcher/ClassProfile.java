@@ -0,0 +1,131 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classes a launch loaded from its closure, in load order, and the jar which had each of them.
+ *
+ * The profile is kept per closure, so that the next launch of the same closure can look each
+ * class up in its jar first and load the classes ahead of <code>main</code>, see
+ * {@link ClassWarmUp}. The jar of a class is the one which won the lookup in classpath order, so
+ * asking it first does not change which of several jars defines the class. The profile is
+ * discarded as soon as a jar of the closure changes.
+ */
+public class ClassProfile {
+    private static final int MAGIC = 0x4c50524f;
+    private static final int VERSION = 1;
+
+    private final List<String> classNames;
+    private final int[] jars;
+
+    private ClassProfile(List<String> classNames, int[] jars) {
+        this.classNames = classNames;
+        this.jars = jars;
+    }
+
+    /**
+     * @param directory where the profiles of closures are kept
+     * @param closure the files of the closure, in classpath order
+     * @return the profile recorded by the last launch of the closure, or <code>null</code> if
+     *         there is none or a jar of the closure changed since.
+     */
+    public static ClassProfile load(File directory, List<File> closure) {
+        final File file = getFile(directory, closure);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!Utils.readHeader(in, closure, MAGIC, VERSION)) {
+                return null;
+            }
+            final int count = in.readInt();
+            final List<String> classNames = new ArrayList<>(count);
+            final int[] jars = new int[count];
+            for (int i = 0; i < count; ++i) {
+                classNames.add(in.readUTF());
+                jars[i] = in.readInt();
+                if (jars[i] < 0 || jars[i] >= closure.size()) {
+                    return null;
+                }
+            }
+            return new ClassProfile(Collections.unmodifiableList(classNames), jars);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the profile of a closure.
+     *
+     * @param classes the classes the launch found and the jar which had each of them, in load
+     *        order, e.g. {@link SharedUrlClassLoader#getFoundClasses()}. classes of jars which are
+     *        not in <code>closure</code> are left out.
+     */
+    public static void store(File directory, final List<File> closure, Map<String, URL> classes) {
+        final Map<URL, Integer> jarIndexes = new HashMap<>();
+        try {
+            for (int i = 0; i < closure.size(); ++i) {
+                final URL url = closure.get(i).toURI().toURL();
+                if (!jarIndexes.containsKey(url)) {
+                    jarIndexes.put(url, i);
+                }
+            }
+        } catch (MalformedURLException e) {
+            return;
+        }
+        final List<String> classNames = new ArrayList<>(classes.size());
+        final List<Integer> jars = new ArrayList<>(classes.size());
+        for (Map.Entry<String, URL> entry : classes.entrySet()) {
+            final Integer jar = jarIndexes.get(entry.getValue());
+            if (jar != null) {
+                classNames.add(entry.getKey());
+                jars.add(jar);
+            }
+        }
+        Utils.writeCache(getFile(directory, closure), new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream stream) throws IOException {
+                final DataOutputStream out = new DataOutputStream(stream);
+                Utils.writeHeader(out, closure, MAGIC, VERSION);
+                out.writeInt(classNames.size());
+                for (int i = 0; i < classNames.size(); ++i) {
+                    out.writeUTF(classNames.get(i));
+                    out.writeInt(jars.get(i));
+                }
+                out.flush();
+            }
+        });
+    }
+
+    /**
+     * @return the names of the classes, in load order.
+     */
+    public List<String> getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * @return the index in the closure of the jar which had the <code>i</code>th class.
+     */
+    public int getJar(int i) {
+        return jars[i];
+    }
+
+    private static File getFile(File directory, List<File> closure) {
+        return new File(directory, ResolutionCache.toKey(closure) + ".prof");
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+
+/**
+ * The size of the class files of a jar, for the {@link LookupCounters} of the classes
+ * {@link URLClassLoader} reads, which does not tell how many bytes it read.
+ *
+ * The central directory of the jar is mapped the first time a size is asked for, and the versioned
+ * entries of a multi-release jar are resolved the way {@link URLClassLoader} resolves them.
+ */
+class ClassSizes {
+    private final File jar;
+    private final Object lock = new Object();
+    private volatile MappedJarFile mapped;
+    private boolean unmappable;
+
+    /**
+     * @param jar the jar, <code>null</code> or a directory if there is none, sizes are 0 then.
+     */
+    ClassSizes(File jar) {
+        this.jar = jar;
+    }
+
+    /**
+     * @return the size of the class file of <code>className</code>, or 0 if it is unknown.
+     */
+    long of(String className) {
+        MappedJarFile ret = mapped;
+        if (ret == null) {
+            synchronized (lock) {
+                if (mapped == null && !unmappable) {
+                    try {
+                        if (jar != null && jar.isFile()) {
+                            mapped = MappedJarFile.open(jar);
+                        } else {
+                            unmappable = true;
+                        }
+                    } catch (IOException e) {
+                        // e.g. ZIP64, URLClassLoader can read it.
+                        unmappable = true;
+                    }
+                }
+                ret = mapped;
+            }
+            if (ret == null) {
+                return 0;
+            }
+        }
+        return Math.max(0, ret.getSize(className.replace('.', '/').concat(".class")));
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads and links the hot classes of a launch, i.e. the classes of its {@link ClassProfile},
+ * either on background threads while <code>main</code> initializes, see {@link #start}, or in
+ * parallel before <code>main</code> is invoked, see {@link #preload}.
+ *
+ * The classes are linked, i.e. verified and prepared, but not initialized, so no static
+ * initializer runs earlier or on another thread than the application expects. There is no API to
+ * link a class only, so each class is asked for its declared fields, which HotSpot links the class
+ * for. The types of the fields are loaded too. A class which is gone is skipped, and dropped from
+ * the profile when the launch is recorded again.
+ */
+public class ClassWarmUp implements Closeable {
+    /**
+     * the number of classes a fork/join task loads without splitting.
+     */
+    private static final int PRELOAD_BATCH = 64;
+
+    private final List<String> names;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger loaded = new AtomicInteger();
+    private volatile boolean closed;
+
+    private ClassWarmUp(final ClassLoader classLoader, List<String> names, int threads) {
+        this.names = names;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread ret = new Thread(r, "launcher-warm-up-" + count.incrementAndGet());
+                ret.setDaemon(true);
+                ret.setContextClassLoader(classLoader);
+                return ret;
+            }
+        });
+        for (int i = 0; i < threads; ++i) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    warmUp(classLoader);
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * @param classLoader the group of the launch
+     * @param names the hot classes, in load order
+     * @param threads number of threads loading the classes
+     * @return the running warm-up, {@link #close()} it when the launch ends.
+     */
+    public static ClassWarmUp start(ClassLoader classLoader, List<String> names, int threads) {
+        return new ClassWarmUp(classLoader, names, threads);
+    }
+
+    /**
+     * Loads and links <code>names</code> with a fork/join pool of <code>parallelism</code>
+     * threads and waits for them.
+     *
+     * @return the number of classes loaded.
+     */
+    public static int preload(ClassLoader classLoader, List<String> names, int parallelism) {
+        final AtomicInteger loaded = new AtomicInteger();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Preload(classLoader, names, 0, names.size(), loaded));
+        } finally {
+            pool.shutdown();
+        }
+        return loaded.get();
+    }
+
+    /**
+     * the threads take the classes in load order, so that they keep ahead of <code>main</code>.
+     */
+    private void warmUp(ClassLoader classLoader) {
+        for (int i = next.getAndIncrement(); i < names.size() && !closed;
+                i = next.getAndIncrement()) {
+            if (load(classLoader, names.get(i))) {
+                loaded.incrementAndGet();
+            }
+        }
+    }
+
+    private static boolean load(ClassLoader classLoader, String name) {
+        final Class<?> aClass;
+        try {
+            aClass = Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            // gone since the profile was recorded, or main will report it.
+            return false;
+        }
+        try {
+            aClass.getDeclaredFields();
+        } catch (LinkageError | SecurityException e) {
+            // e.g. a VerifyError, which main gets again when it links the class.
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of classes loaded so far, linked or not.
+     */
+    public int getLoaded() {
+        return loaded.get();
+    }
+
+    public int getSize() {
+        return names.size();
+    }
+
+    /**
+     * Stops loading classes, a class being loaded is loaded completely. the threads are not
+     * interrupted, an interrupt would close the channel of a jar which other threads read.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Loads a range of the classes, splitting it while it is larger than a batch.
+     */
+    private static class Preload extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ClassLoader classLoader;
+        private final List<String> names;
+        private final int from;
+        private final int to;
+        private final AtomicInteger loaded;
+
+        private Preload(ClassLoader classLoader, List<String> names, int from, int to,
+                AtomicInteger loaded) {
+            this.classLoader = classLoader;
+            this.names = names;
+            this.from = from;
+            this.to = to;
+            this.loaded = loaded;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PRELOAD_BATCH) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Preload(classLoader, names, from, middle, loaded),
+                        new Preload(classLoader, names, middle, to, loaded));
+                return;
+            }
+            for (int i = from; i < to; ++i) {
+                if (load(classLoader, names.get(i))) {
+                    loaded.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The classes and packages which several jars of a closure contain.
+ *
+ * The {@link JarIndex} of every jar is loaded by a pool of threads. Only the packages which more
+ * than one jar has are split, and only their entries can be duplicates, so the entries of the
+ * other packages are never decoded. A duplicate class is won by the first jar in classpath order,
+ * which is the one {@link SharedUrlClassLoader} defines it from.
+ */
+public class ClasspathAnalysis {
+    private static final String META_INF = "META-INF";
+    private static final String MODULE_INFO = "module-info.class";
+
+    private final int packages;
+    private final List<SplitPackage> splitPackages;
+    private final List<DuplicateClass> duplicateClasses;
+
+    private ClasspathAnalysis(int packages, List<SplitPackage> splitPackages,
+            List<DuplicateClass> duplicateClasses) {
+        this.packages = packages;
+        this.splitPackages = splitPackages;
+        this.duplicateClasses = duplicateClasses;
+    }
+
+    /**
+     * @param files the files of a closure, in classpath order. files which are not jars, e.g.
+     *        directories, are left out.
+     * @param indexDirectory where {@link JarIndex} files are cached, <code>null</code> to scan
+     *        every jar.
+     * @param threads number of threads loading the indexes
+     */
+    public static ClasspathAnalysis analyze(List<File> files, File indexDirectory, int threads)
+            throws IOException {
+        final List<File> jars = new ArrayList<>(files.size());
+        for (File file : files) {
+            if (file.isFile()) {
+                jars.add(file);
+            }
+        }
+        final List<JarIndex> indexes = load(jars, indexDirectory, threads);
+        // the jars of each package, in classpath order.
+        final Map<String, List<Integer>> owners = new HashMap<>();
+        for (int i = 0; i < indexes.size(); ++i) {
+            for (String packageName : indexes.get(i).getPackages()) {
+                if (packageName.startsWith(META_INF)) {
+                    continue;
+                }
+                List<Integer> list = owners.get(packageName);
+                if (list == null) {
+                    list = new ArrayList<>(1);
+                    owners.put(packageName, list);
+                }
+                list.add(i);
+            }
+        }
+        final Map<String, SplitPackage> splitPackages = new TreeMap<>();
+        final Map<String, DuplicateClass> duplicateClasses = new TreeMap<>();
+        for (Map.Entry<String, List<Integer>> entry : owners.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                analyze(entry.getKey(), entry.getValue(), jars, indexes, splitPackages,
+                        duplicateClasses);
+            }
+        }
+        return new ClasspathAnalysis(owners.size(),
+                Collections.unmodifiableList(new ArrayList<>(splitPackages.values())),
+                Collections.unmodifiableList(new ArrayList<>(duplicateClasses.values())));
+    }
+
+    /**
+     * finds the jars which have classes of a package, and the classes several of them have.
+     */
+    private static void analyze(String packageName, List<Integer> owners, List<File> jars,
+            List<JarIndex> indexes, Map<String, SplitPackage> splitPackages,
+            Map<String, DuplicateClass> duplicateClasses) {
+        final List<File> classOwners = new ArrayList<>();
+        final Map<String, List<File>> classes = new LinkedHashMap<>();
+        for (int owner : owners) {
+            boolean hasClass = false;
+            for (String name : indexes.get(owner).getEntries(packageName)) {
+                if (!name.endsWith(".class") || name.equals(MODULE_INFO)) {
+                    continue;
+                }
+                hasClass = true;
+                List<File> list = classes.get(name);
+                if (list == null) {
+                    list = new ArrayList<>(1);
+                    classes.put(name, list);
+                }
+                list.add(jars.get(owner));
+            }
+            if (hasClass) {
+                classOwners.add(jars.get(owner));
+            }
+        }
+        if (classOwners.size() < 2) {
+            // e.g. a package of resources only in all jars but one.
+            return;
+        }
+        final String dotted = packageName.replace('/', '.');
+        splitPackages.put(dotted, new SplitPackage(dotted, classOwners));
+        for (Map.Entry<String, List<File>> entry : classes.entrySet()) {
+            final List<File> list = entry.getValue();
+            if (list.size() > 1) {
+                final String name = entry.getKey();
+                final String className =
+                        name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                duplicateClasses.put(className, new DuplicateClass(className, list.get(0),
+                        Collections.unmodifiableList(list.subList(1, list.size()))));
+            }
+        }
+    }
+
+    private static List<JarIndex> load(List<File> jars, final File indexDirectory, int threads)
+            throws IOException {
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(threads, Math.max(1, jars.size())),
+                        new AnalyzerThreadFactory());
+        try {
+            final List<Future<JarIndex>> futures = new ArrayList<>(jars.size());
+            for (final File jar : jars) {
+                futures.add(executor.submit(new Callable<JarIndex>() {
+                    @Override
+                    public JarIndex call() throws IOException {
+                        return JarIndex.load(jar, indexDirectory);
+                    }
+                }));
+            }
+            final List<JarIndex> ret = new ArrayList<>(jars.size());
+            for (Future<JarIndex> future : futures) {
+                ret.add(get(future));
+            }
+            return ret;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static JarIndex get(Future<JarIndex> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while indexing jars", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return the number of distinct packages of the closure.
+     */
+    public int getPackages() {
+        return packages;
+    }
+
+    /**
+     * @return the packages whose classes are in more than one jar, sorted by name.
+     */
+    public List<SplitPackage> getSplitPackages() {
+        return splitPackages;
+    }
+
+    /**
+     * @return the classes which more than one jar has, sorted by name.
+     */
+    public List<DuplicateClass> getDuplicateClasses() {
+        return duplicateClasses;
+    }
+
+    /**
+     * A package whose classes are in more than one jar.
+     */
+    public static class SplitPackage {
+        private final String name;
+        private final List<File> jars;
+
+        private SplitPackage(String name, List<File> jars) {
+            this.name = name;
+            this.jars = Collections.unmodifiableList(jars);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the jars which have classes of the package, in classpath order.
+         */
+        public List<File> getJars() {
+            return jars;
+        }
+    }
+
+    /**
+     * A class which more than one jar has.
+     */
+    public static class DuplicateClass {
+        private final String name;
+        private final File winner;
+        private final List<File> shadowed;
+
+        private DuplicateClass(String name, File winner, List<File> shadowed) {
+            this.name = name;
+            this.winner = winner;
+            this.shadowed = shadowed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the jar the class is loaded from, the first in classpath order.
+         */
+        public File getWinner() {
+            return winner;
+        }
+
+        /**
+         * @return the other jars which have the class, in classpath order.
+         */
+        public List<File> getShadowed() {
+            return shadowed;
+        }
+    }
+
+    private static class AnalyzerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread =
+                    new Thread(runnable, "launcher-analyzer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
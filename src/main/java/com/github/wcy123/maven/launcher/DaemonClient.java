@@ -0,0 +1,250 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Submits launches to a {@link LauncherDaemon}, starting one if none is running.
+ *
+ * A daemon is identified by a key made of the Java home, the working directory and the values of
+ * the given environment variables, because a launch inside the daemon sees the directory and the
+ * environment the daemon was started with.
+ */
+public class DaemonClient {
+    private static final long START_TIMEOUT_MILLIS = 10000;
+
+    private final File directory;
+    private final long idleMillis;
+    private final List<String> environmentNames;
+
+    /**
+     * @param directory where the port files and logs of the daemons are kept
+     * @param idleMillis how long a daemon waits for a launch before exiting
+     * @param environmentNames the environment variables a launch depends on
+     */
+    public DaemonClient(File directory, long idleMillis, List<String> environmentNames) {
+        this.directory = directory;
+        this.idleMillis = idleMillis;
+        this.environmentNames = environmentNames;
+    }
+
+    /**
+     * Runs <code>mainClass</code> in the daemon and copies its output to <code>out</code> and
+     * <code>err</code> while it runs.
+     *
+     * @param aggregateDirectory where the aggregate resources of closures are kept,
+     *        <code>null</code> to look them up in the jars.
+     * @return the exit code of the launch, 0 unless <code>main</code> threw.
+     * @throws ConnectionLostException if the daemon accepted the launch but did not send its exit
+     *         code, the launch must not be run again.
+     * @throws IOException if no daemon can be reached or the daemon refused the launch.
+     */
+    public int launch(File indexDirectory, File aggregateDirectory, String mainClass, URL[] urls,
+            String[] args, PrintStream out, PrintStream err) throws IOException {
+        final String key = key();
+        final File portFile = new File(directory, key + ".port");
+        Socket socket = connect(portFile);
+        if (socket == null) {
+            start(portFile, key);
+            socket = waitFor(portFile);
+        }
+        try (Socket s = socket) {
+            final DataOutputStream request =
+                    new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            request.writeInt(LauncherDaemon.PROTOCOL);
+            request.writeUTF(readPortFile(portFile)[1]);
+            request.writeUTF(key);
+            request.writeUTF(indexDirectory == null ? "" : indexDirectory.getAbsolutePath());
+            request.writeUTF(
+                    aggregateDirectory == null ? "" : aggregateDirectory.getAbsolutePath());
+            request.writeUTF(mainClass);
+            request.writeInt(urls.length);
+            for (URL url : urls) {
+                request.writeUTF(url.toString());
+            }
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            final DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            readAccepted(in, "the daemon");
+            return readFrames(in, out, err, "the daemon");
+        }
+    }
+
+    /**
+     * Reads the frame which tells that a request was accepted and its launch started.
+     *
+     * @throws IOException if the request was not accepted
+     */
+    static void readAccepted(DataInputStream in, String peer) throws IOException {
+        final int frame = in.readByte();
+        if (frame == LauncherDaemon.REJECTED) {
+            throw new IOException(peer + " refused the launch: " + in.readUTF());
+        }
+        if (frame != LauncherDaemon.ACCEPTED) {
+            throw new IOException("unexpected frame from " + peer + ": " + frame);
+        }
+    }
+
+    /**
+     * Copies the output frames of an accepted launch to <code>out</code> and <code>err</code>.
+     *
+     * @param peer what runs the launch, for messages
+     * @return the exit code which ends the frames.
+     * @throws ConnectionLostException if the frames end without an exit code
+     */
+    static int readFrames(DataInputStream in, PrintStream out, PrintStream err, String peer)
+            throws ConnectionLostException {
+        try {
+            return copyFrames(in, out, err);
+        } catch (EOFException e) {
+            throw new ConnectionLostException(peer + " exited without an exit code, e.g. the launch"
+                    + " called System.exit", e);
+        } catch (IOException e) {
+            throw new ConnectionLostException(
+                    "lost the connection to " + peer + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static int copyFrames(DataInputStream in, PrintStream out, PrintStream err)
+            throws IOException {
+        byte[] buffer = new byte[8192];
+        while (true) {
+            final int channel = in.readByte();
+            switch (channel) {
+                case LauncherDaemon.STDOUT:
+                case LauncherDaemon.STDERR:
+                    final int length = in.readInt();
+                    if (length > buffer.length) {
+                        buffer = new byte[length];
+                    }
+                    in.readFully(buffer, 0, length);
+                    final PrintStream target = channel == LauncherDaemon.STDOUT ? out : err;
+                    target.write(buffer, 0, length);
+                    target.flush();
+                    break;
+                case LauncherDaemon.EXIT:
+                    return in.readInt();
+                default:
+                    throw new IOException("unexpected frame " + channel);
+            }
+        }
+    }
+
+    private String key() {
+        final StringBuilder sb = new StringBuilder();
+        // a daemon of another protocol ignores the requests.
+        sb.append(LauncherDaemon.PROTOCOL).append('\n');
+        sb.append(System.getProperty("java.home")).append('\n');
+        sb.append(new File("").getAbsolutePath()).append('\n');
+        for (String name : environmentNames) {
+            sb.append(name).append('=').append(System.getenv(name)).append('\n');
+        }
+        return JarIndex.sha1(sb.toString());
+    }
+
+    private void start(File portFile, String key) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        final List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.addAll(Arrays.asList("-cp", pluginJar().getAbsolutePath(),
+                LauncherDaemon.class.getName(), portFile.getAbsolutePath(), key,
+                Long.toString(idleMillis)));
+        final ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(new File(directory, key + ".log")));
+        builder.start();
+    }
+
+    private static Socket waitFor(File portFile) throws IOException {
+        final long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            final Socket socket = connect(portFile);
+            if (socket != null) {
+                return socket;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while starting the daemon", e);
+            }
+        }
+        throw new IOException("the daemon did not start within " + START_TIMEOUT_MILLIS + " ms");
+    }
+
+    /**
+     * @return a connection to the daemon of <code>portFile</code>, or <code>null</code> if it is
+     *         not running.
+     */
+    private static Socket connect(File portFile) {
+        if (!portFile.isFile()) {
+            return null;
+        }
+        try {
+            final int port = Integer.parseInt(readPortFile(portFile)[0]);
+            return new Socket(InetAddress.getLoopbackAddress(), port);
+        } catch (IOException | RuntimeException e) {
+            // a daemon which died without removing its port file.
+            portFile.delete();
+            return null;
+        }
+    }
+
+    static String[] readPortFile(File portFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(portFile), StandardCharsets.UTF_8))) {
+            return new String[] {reader.readLine(), reader.readLine()};
+        }
+    }
+
+    static String javaExecutable() {
+        final File bin = new File(System.getProperty("java.home"), "bin");
+        final File java = new File(bin, "java");
+        return java.isFile() ? java.getAbsolutePath() : new File(bin, "java.exe").getAbsolutePath();
+    }
+
+    /**
+     * Thrown when a launch was accepted but its exit code was not received, the launch may have
+     * run and must not be run again.
+     */
+    public static class ConnectionLostException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ConnectionLostException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    static File pluginJar() throws IOException {
+        try {
+            final URL location =
+                    LauncherDaemon.class.getProtectionDomain().getCodeSource().getLocation();
+            return new File(location.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("cannot locate the launcher classes", e);
+        }
+    }
+}
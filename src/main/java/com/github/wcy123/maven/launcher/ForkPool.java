@@ -0,0 +1,204 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Child JVMs which are started ahead of forked launches, see {@link PooledChild}, so that a launch
+ * skips the start of a JVM and the loading of its first classes.
+ *
+ * The children of a launch are identified by a key made of the command of the child, the jars of
+ * the closure, the Main-Class, the working directory and the values of the given environment
+ * variables, because a child sees the directory and the environment of the launch which started
+ * it, as a daemon does, see {@link DaemonClient}. A launch claims a ready child by renaming its
+ * port file, which only one launch can do. Then it starts children until the given number of
+ * them are ready or starting for the next launches.
+ */
+public class ForkPool {
+    private static final long START_TIMEOUT_MILLIS = 10000;
+
+    private final File directory;
+    private final int size;
+    private final long idleMillis;
+    private final List<String> environmentNames;
+    private final File profileDirectory;
+
+    /**
+     * @param directory where the port files and logs of the children are kept
+     * @param size number of children kept ready for each launch
+     * @param idleMillis how long a child waits for a launch before exiting
+     * @param environmentNames the environment variables a launch depends on
+     * @param profileDirectory where class profiles are kept, <code>null</code> if launches are
+     *        not profiled. a child loads the profiled classes of its closure ahead.
+     */
+    public ForkPool(File directory, int size, long idleMillis, List<String> environmentNames,
+            File profileDirectory) {
+        this.directory = directory;
+        this.size = size;
+        this.idleMillis = idleMillis;
+        this.environmentNames = environmentNames;
+        this.profileDirectory = profileDirectory;
+    }
+
+    /**
+     * Runs <code>mainClass</code> in a ready child, if there is one, and copies its output to
+     * <code>out</code> and <code>err</code> while it runs.
+     *
+     * @param command the java executable, the options and the class path of a child, which must
+     *        end with the launcher classes
+     * @param closure the jars of the launch, in classpath order
+     * @return the exit code of the launch, or <code>null</code> if no child was ready and the
+     *         launch must start a JVM of its own.
+     * @throws DaemonClient.ConnectionLostException if the child accepted the launch but did not
+     *         send its exit code, the launch must not be run again.
+     * @throws IOException if no child can be started
+     */
+    public Integer launch(List<String> command, List<File> closure, String mainClass,
+            String[] args, PrintStream out, PrintStream err) throws IOException {
+        final String key = key(command, closure, mainClass);
+        final Socket socket = claim(key, args);
+        fill(key, command, mainClass);
+        if (socket == null) {
+            return null;
+        }
+        try (Socket s = socket) {
+            return DaemonClient.readFrames(
+                    new DataInputStream(new BufferedInputStream(s.getInputStream())), out, err,
+                    "the pooled child");
+        }
+    }
+
+    /**
+     * @return a connection to a ready child which accepted <code>args</code>, or
+     *         <code>null</code> if no child is ready.
+     */
+    private Socket claim(String key, String[] args) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return null;
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            if (!name.startsWith(key + "-") || !name.endsWith(PooledChild.PORT)) {
+                continue;
+            }
+            final File claimed = new File(directory, name + ".claimed");
+            try {
+                Files.move(file.toPath(), claimed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // another launch claimed it.
+                continue;
+            }
+            Socket socket = null;
+            try {
+                final String[] portFile = DaemonClient.readPortFile(claimed);
+                socket = new Socket(InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(portFile[0]));
+                final DataOutputStream request =
+                        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                request.writeInt(PooledChild.PROTOCOL);
+                request.writeUTF(portFile[1]);
+                request.writeInt(args.length);
+                for (String arg : args) {
+                    request.writeUTF(arg);
+                }
+                request.flush();
+                // unbuffered, the frames of the launch follow.
+                DaemonClient.readAccepted(new DataInputStream(socket.getInputStream()),
+                        "the pooled child");
+                return socket;
+            } catch (IOException | RuntimeException e) {
+                // a child which exited since, e.g. after its idle timeout.
+                close(socket);
+            } finally {
+                claimed.delete();
+            }
+        }
+        return null;
+    }
+
+    private static void close(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing was sent through it.
+        }
+    }
+
+    /**
+     * Starts children until {@link #size} of them are ready or starting.
+     */
+    private void fill(String key, List<String> command, String mainClass) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        int count = 0;
+        final File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            final String name = file.getName();
+            if (!name.startsWith(key + "-")) {
+                continue;
+            }
+            if (name.endsWith(PooledChild.PORT)) {
+                ++count;
+            } else if (name.endsWith(PooledChild.STARTING)) {
+                if (System.currentTimeMillis() - file.lastModified() > START_TIMEOUT_MILLIS) {
+                    // a child which failed to start, e.g. for an invalid option.
+                    file.delete();
+                } else {
+                    ++count;
+                }
+            }
+        }
+        for (; count < size; ++count) {
+            final File starting = File.createTempFile(key + "-", PooledChild.STARTING, directory);
+            final String path = starting.getAbsolutePath();
+            final List<String> childCommand = new ArrayList<>(command);
+            childCommand.add(PooledChild.class.getName());
+            childCommand.add(path.substring(0, path.length() - PooledChild.STARTING.length())
+                    + PooledChild.PORT);
+            childCommand.add(Long.toString(idleMillis));
+            childCommand.add(mainClass);
+            childCommand.add(profileDirectory == null ? "" : profileDirectory.getAbsolutePath());
+            final ProcessBuilder builder = new ProcessBuilder(childCommand);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(
+                    ProcessBuilder.Redirect.appendTo(new File(directory, key + ".log")));
+            builder.start();
+        }
+    }
+
+    private String key(List<String> command, List<File> closure, String mainClass) {
+        final StringBuilder sb = new StringBuilder();
+        // a child of another protocol ignores the requests.
+        sb.append(PooledChild.PROTOCOL).append('\n');
+        for (String argument : command) {
+            sb.append(argument).append('\n');
+        }
+        // a child has loaded classes of the jars already.
+        for (File jar : closure) {
+            sb.append(jar.getAbsolutePath()).append(' ').append(jar.length()).append(' ')
+                    .append(jar.lastModified()).append('\n');
+        }
+        sb.append(mainClass).append('\n');
+        sb.append(new File("").getAbsolutePath()).append('\n');
+        for (String name : environmentNames) {
+            sb.append(name).append('=').append(System.getenv(name)).append('\n');
+        }
+        return JarIndex.sha1(sb.toString());
+    }
+}
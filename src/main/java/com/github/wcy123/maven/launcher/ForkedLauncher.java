@@ -0,0 +1,143 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs a launch in a child JVM, with the resolved closure on its application class path.
+ *
+ * Optionally the child uses a dynamic AppCDS archive generated for the exact closure: the first
+ * launch is a training run with <code>-XX:ArchiveClassesAtExit</code>, later launches map the
+ * archive with <code>-XX:SharedArchiveFile</code>, which saves parsing and verifying the classes
+ * of the closure. Dynamic archives need a JDK 13 or later.
+ *
+ * On a JDK 9 or later the class path is passed in an argument file, kept per closure, so that the
+ * command line stays short whatever the size of the closure. A launch can also run in a child
+ * which a {@link ForkPool} started ahead.
+ */
+public class ForkedLauncher {
+    private final File cdsDirectory;
+    private final File argumentDirectory;
+    private final ForkPool pool;
+
+    /**
+     * @param cdsDirectory where CDS archives are kept, <code>null</code> not to use CDS.
+     * @param argumentDirectory where argument files are kept, <code>null</code> to pass the class
+     *        path on the command line.
+     * @param pool the children started ahead, <code>null</code> to start a child per launch.
+     */
+    public ForkedLauncher(File cdsDirectory, File argumentDirectory, ForkPool pool) {
+        this.cdsDirectory = cdsDirectory;
+        this.argumentDirectory = argumentDirectory;
+        this.pool = pool;
+    }
+
+    /**
+     * @return true if the JVM which runs the children can use dynamic CDS archives.
+     */
+    public static boolean supportsDynamicArchive() {
+        return Utils.featureVersion() >= 13;
+    }
+
+    /**
+     * Runs <code>mainClass</code> and waits for the child JVM to exit. The child inherits the
+     * standard streams of this JVM, a child of the pool streams its output to this JVM.
+     *
+     * @param options options of the child JVM, e.g. <code>-Xmx2g</code>
+     * @return the exit code of the child JVM.
+     */
+    public int launch(List<File> classpath, List<String> options, String mainClass,
+            String[] args) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(DaemonClient.javaExecutable());
+        File archive = null;
+        File training = null;
+        if (cdsDirectory != null && supportsDynamicArchive()) {
+            archive = new File(cdsDirectory, archiveName(classpath));
+            if (archive.isFile()) {
+                command.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            }
+        }
+        command.addAll(options);
+        if (pool != null) {
+            // the launcher classes come last, an archive of the closure fits the children too.
+            final List<File> childClasspath = new ArrayList<>(classpath);
+            childClasspath.add(DaemonClient.pluginJar());
+            final List<String> childCommand = new ArrayList<>(command);
+            childCommand.addAll(classpathOptions(childClasspath));
+            final Integer exitCode =
+                    pool.launch(childCommand, classpath, mainClass, args, System.out, System.err);
+            if (exitCode != null) {
+                return exitCode;
+            }
+        }
+        if (archive != null && !archive.isFile()
+                && (cdsDirectory.isDirectory() || cdsDirectory.mkdirs())) {
+            // concurrent training runs must not write to the same file.
+            training = File.createTempFile(archive.getName(), ".tmp", cdsDirectory);
+            training.delete();
+            command.add(1, "-XX:ArchiveClassesAtExit=" + training.getAbsolutePath());
+        }
+        command.addAll(classpathOptions(classpath));
+        command.add(mainClass);
+        command.addAll(Arrays.asList(args));
+        final int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (training != null) {
+            if (exitCode == 0 && training.isFile()) {
+                Utils.moveAtomically(training, archive);
+            } else {
+                training.delete();
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * @return the options which put <code>classpath</code> on the class path of a child.
+     */
+    private List<String> classpathOptions(List<File> classpath) throws IOException {
+        final String value = toClasspath(classpath);
+        if (argumentDirectory == null || Utils.featureVersion() < 9
+                || (!argumentDirectory.isDirectory() && !argumentDirectory.mkdirs())) {
+            return Arrays.asList("-cp", value);
+        }
+        final File file = new File(argumentDirectory, JarIndex.sha1(value) + ".args");
+        if (!file.isFile()) {
+            // backslashes and quotes are escaped inside a quoted argument.
+            final String quoted = value.replace("\\", "\\\\").replace("\"", "\\\"");
+            final byte[] content = ("-cp\n\"" + quoted + "\"\n").getBytes(StandardCharsets.UTF_8);
+            Utils.writeAtomically(file, false, new Utils.Content() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(content);
+                }
+            });
+        }
+        return Collections.singletonList("@" + file.getAbsolutePath());
+    }
+
+    static String toClasspath(List<File> classpath) {
+        final StringBuilder sb = new StringBuilder();
+        for (File file : classpath) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparatorChar);
+            }
+            sb.append(file.getAbsolutePath());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * an archive is only valid for the JVM which dumped it and for the same class path.
+     */
+    private static String archiveName(List<File> classpath) {
+        return JarIndex.sha1(System.getProperty("java.home") + "\n"
+                + System.getProperty("java.vm.version") + "\n" + toClasspath(classpath)) + ".jsa";
+    }
+}
@@ -0,0 +1,257 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
+import org.apache.maven.shared.dependencies.DefaultDependableCoordinate;
+import org.apache.maven.shared.dependencies.resolve.DependencyResolverException;
+import org.apache.maven.shared.utils.StringUtils;
+import org.eclipse.aether.collection.DependencyCollectionException;
+
+/**
+ * Goal which launches several artifacts in this JVM, each <code>main</code> on a thread of its
+ * own whose context class loader is the class loader of its application. The class loaders are
+ * closed once all the applications, and the non-daemon threads they started, ended.
+ *
+ * The jar of each application is loaded by a loader of its own. The dependencies the
+ * applications have in common are loaded once by the shared jar loaders, so their classes are
+ * defined once for all the applications, and so is their static state, e.g. the configuration of
+ * a logging framework.
+ */
+@Mojo(name = "host", requiresProject = false)
+public class HostMojo
+        extends AbstractLauncherMojo {
+    /**
+     * The artifacts to launch, separated by comma, each of the form
+     * groupId:artifactId:version[:packaging[:classifier]]. The Main-Class of the manifest of each
+     * artifact is run without arguments.
+     */
+    @Parameter(property = "launcher.apps")
+    private String apps;
+
+    /**
+     * A file which lists the artifacts to launch, one per line, each followed by an optional main
+     * class and its arguments, separated by white space. An argument which has white space in it
+     * is quoted, e.g. <code>--title "two words"</code>. Blank lines and lines starting with
+     * <code>#</code> are ignored.
+     */
+    @Parameter(property = "launcher.appsFile")
+    private File appsFile;
+
+    @Override
+    public void execute()
+            throws MojoExecutionException, MojoFailureException {
+        if (isSkip()) {
+            getLog().info("Skipping plugin execution");
+            return;
+        }
+
+        final List<App> hosted = parseApps();
+        if (hosted.isEmpty()) {
+            throw new MojoFailureException("You must specify the applications, "
+                    + "e.g. -Dlauncher.apps=com.acme:a:1.0,com.acme:b:1.0");
+        }
+        checkThreadModel();
+        List<ArtifactRepository> repoList = getRepositories();
+        final File indexDirectory = indexCache ? new File(getLauncherDirectory(), "index") : null;
+        final File aggregateDirectory =
+                aggregateCache ? new File(getLauncherDirectory(), "resolved") : null;
+        SharedUrlClassLoader.setMaxIdleLoaders(maxIdleLoaders);
+        SharedUrlClassLoader.setMemoryMapped(mmap);
+        try {
+            ProjectBuildingRequest buildingRequest = newBuildingRequest(repoList);
+            for (App app : hosted) {
+                open(app, buildingRequest, repoList, indexDirectory, aggregateDirectory);
+            }
+            final Set<Thread> existing = MainThreads.liveThreads();
+            for (App app : hosted) {
+                app.warmUp = startWarmUp(app.classLoader, app.profile, app.report);
+                app.thread.start();
+            }
+            for (App app : hosted) {
+                app.thread.join();
+            }
+            // the threads of an application cannot be told from those of another one.
+            MainThreads.joinNonDaemonThreads(existing, null);
+        } catch (DependencyResolverException e) {
+            throw new MojoExecutionException("Couldn't download artifact: " + e.getMessage(), e);
+        } catch (DependencyCollectionException e) {
+            throw new MojoExecutionException("Couldn't collect dependencies: " + e.getMessage(), e);
+        } catch (IOException e) {
+            getLog().error("cannot create class loader", e);
+            throw new MojoFailureException("cannot create class loader");
+        } catch (ArtifactResolverException e) {
+            getLog().error("cannot resolve artifact", e);
+            throw new MojoFailureException("cannot resolve artifact");
+        } catch (InterruptedException e) {
+            getLog().error("interrupted", e);
+        } finally {
+            close(hosted);
+        }
+
+        final List<String> failed = new ArrayList<>();
+        for (App app : hosted) {
+            if (app.failure != null) {
+                getLog().error(app.coordinate + " failed", app.failure);
+                failed.add(app.coordinate.toString());
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new MojoFailureException(failed.size() + " of " + hosted.size()
+                    + " applications failed: " + StringUtils.join(failed.iterator(), ", "));
+        }
+    }
+
+    private List<App> parseApps() throws MojoFailureException {
+        final List<App> ret = new ArrayList<>();
+        if (apps != null) {
+            for (String artifact : StringUtils.split(apps, ",")) {
+                ret.add(new App(artifact.trim(), null, new String[0]));
+            }
+        }
+        if (appsFile != null) {
+            final List<String> lines;
+            try {
+                lines = Files.readAllLines(appsFile.toPath(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new MojoFailureException("cannot read " + appsFile + ": " + e.getMessage());
+            }
+            for (String line : lines) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final List<String> tokens = splitArguments(appsFile.getName(), line);
+                ret.add(new App(tokens.get(0), tokens.size() > 1 ? tokens.get(1) : null,
+                        tokens.size() > 2
+                                ? tokens.subList(2, tokens.size()).toArray(new String[0])
+                                : new String[0]));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Resolves the closure of <code>app</code>, creates its class loader group and the thread
+     * which runs it.
+     */
+    private void open(final App app, ProjectBuildingRequest buildingRequest,
+            List<ArtifactRepository> repoList, File indexDirectory, File aggregateDirectory)
+            throws MojoFailureException, DependencyResolverException,
+            DependencyCollectionException, ArtifactResolverException, IOException {
+        final DefaultDependableCoordinate coordinate = new DefaultDependableCoordinate();
+        coordinate.setType("jar");
+        parseArtifact(app.artifact, coordinate);
+        app.coordinate = coordinate;
+        final List<File> files =
+                resolveClosure(coordinate, buildingRequest, repoList, app.report);
+        if (files.isEmpty()) {
+            throw new MojoFailureException("cannot find the first artifact of " + coordinate);
+        }
+        app.report.begin("manifest");
+        final ManifestMetadata metadata = loadMetadata(files.get(0));
+        // a fat jar is launched from its nested jars, it has neither aggregates nor a profile.
+        final boolean fatJar = NestedJars.isFatJar(metadata.getManifest());
+        checkAddOpens(metadata, files.get(0));
+        if (app.mainClass == null) {
+            app.mainClass = fatJar ? NestedJars.getStartClass(metadata.getManifest())
+                    : metadata.getMainClass();
+            if (app.mainClass == null) {
+                throw new MojoFailureException("cannot find "
+                        + (fatJar ? "Start-Class" : "Main-Class") + " in " + files.get(0));
+            }
+        }
+        app.report.setMainClass(app.mainClass);
+        final List<File> members = toMemberFiles(files, metadata);
+        app.report.begin("aggregates");
+        final AggregateResources aggregates = aggregateDirectory == null || fatJar ? null
+                : AggregateResources.load(aggregateDirectory, members);
+        app.report.begin("loaders");
+        final URL[] urls = toMembers(members, metadata);
+        // the application jar is private to the application, its dependencies are shared.
+        app.profile = fatJar ? null : loadProfile(members);
+        app.classLoader = SharedUrlClassLoader.create(urls, indexDirectory, 1, aggregates,
+                app.profile, isProfiling() && !fatJar);
+        app.files = fatJar ? null : members;
+        app.thread = newMainThread(coordinate.getArtifactId(), new Runnable() {
+            @Override
+            public void run() {
+                app.report.begin("init");
+                try {
+                    final Class<?> aClass = Class.forName(app.mainClass, true, app.classLoader);
+                    final Method main = aClass.getMethod("main", String[].class);
+                    app.report.begin("run");
+                    main.invoke(null, new Object[] {app.args});
+                } catch (InvocationTargetException e) {
+                    app.failure = e.getCause();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    app.failure = e;
+                }
+            }
+        });
+        app.thread.setContextClassLoader(app.classLoader);
+    }
+
+    private void close(List<App> hosted) {
+        for (App app : hosted) {
+            if (app.classLoader != null) {
+                app.report.begin("close");
+                finishWarmUp(app.warmUp, app.classLoader, app.files);
+                app.report.setCounters(app.classLoader.getLookupCounters(),
+                        app.classLoader.getMemberCounters());
+                try {
+                    app.classLoader.close();
+                } catch (IOException e) {
+                    getLog().warn("cannot close the class loader of " + app.coordinate, e);
+                }
+            }
+            app.report.end();
+            LauncherMetrics.get().record(app.report);
+            getLog().info((app.coordinate == null ? app.artifact : app.coordinate)
+                    + " launch phases: " + app.report);
+        }
+        getLog().info("shared loaders: " + SharedUrlClassLoader.getStatistics());
+    }
+
+    /**
+     * An application hosted in this JVM.
+     */
+    private static class App {
+        private final String artifact;
+        private final String[] args;
+        private final LaunchReport report;
+        private String mainClass;
+        private DefaultDependableCoordinate coordinate;
+        /**
+         * the closure the profile is recorded for, <code>null</code> for a fat jar.
+         */
+        private List<File> files;
+        private ClassProfile profile;
+        private SharedUrlClassLoader classLoader;
+        private ClassWarmUp warmUp;
+        private Thread thread;
+        private volatile Throwable failure;
+
+        private App(String artifact, String mainClass, String[] args) {
+            this.artifact = artifact;
+            this.mainClass = mainClass;
+            this.args = args;
+            this.report = new LaunchReport(artifact, "host");
+        }
+    }
+}
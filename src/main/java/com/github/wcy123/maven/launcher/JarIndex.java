@@ -0,0 +1,339 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The list of entries of a jar file, grouped by package.
+ *
+ * An index can be persisted in a compact binary file, keyed by the path, size and modification
+ * time of the jar, so that later launches memory-map it instead of opening and scanning the jar
+ * again. The layout of an index file is
+ *
+ * <pre>
+ * int     MAGIC
+ * int     VERSION
+ * long    size of the jar
+ * long    last modified time of the jar
+ * string  absolute path of the jar
+ * byte    1 if the jar is a multi-release jar, otherwise 0
+ * int     number of packages
+ * repeat  string package, int offset of its entries, int number of entries
+ * repeat  string simple entry name
+ * </pre>
+ *
+ * where a string is an unsigned short length followed by the UTF-8 bytes. Entry names are only
+ * decoded when they are asked for.
+ */
+public class JarIndex {
+    private static final int MAGIC = 0x4a494458; // JIDX
+    private static final int VERSION = 2;
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final String[] packages;
+    private final int[] offsets;
+    private final int[] counts;
+    private final ByteBuffer entries;
+    private final boolean multiRelease;
+
+    private JarIndex(String[] packages, int[] offsets, int[] counts, ByteBuffer entries,
+            boolean multiRelease) {
+        this.packages = packages;
+        this.offsets = offsets;
+        this.counts = counts;
+        this.entries = entries;
+        this.multiRelease = multiRelease;
+    }
+
+    /**
+     * Returns the index of a jar file, from <code>indexDirectory</code> when an up-to-date one is
+     * there, otherwise by scanning the jar and storing the result for the next time.
+     *
+     * @param jar the jar file
+     * @param indexDirectory where index files are kept, <code>null</code> not to persist them
+     * @return the index
+     * @throws IOException if the jar cannot be read
+     */
+    public static JarIndex load(File jar, File indexDirectory) throws IOException {
+        if (indexDirectory == null) {
+            final boolean[] multiRelease = {false};
+            return read(ByteBuffer.wrap(toBytes(scan(jar, multiRelease), multiRelease[0], jar)),
+                    null);
+        }
+        final File indexFile = new File(indexDirectory, indexName(jar));
+        if (indexFile.isFile()) {
+            final JarIndex ret = read(map(indexFile), jar);
+            if (ret != null) {
+                return ret;
+            }
+        }
+        final boolean[] multiRelease = {false};
+        final byte[] bytes = toBytes(scan(jar, multiRelease), multiRelease[0], jar);
+        store(indexFile, bytes);
+        return read(ByteBuffer.wrap(bytes), null);
+    }
+
+    public String[] getPackages() {
+        return packages.clone();
+    }
+
+    /**
+     * @return true if the manifest of the jar declares it a multi-release jar, whose entries
+     *         under <code>META-INF/versions/</code> replace the base entries on later Java
+     *         versions.
+     */
+    public boolean isMultiRelease() {
+        return multiRelease;
+    }
+
+    /**
+     * @param version the feature version of the running JVM, e.g. 17
+     * @return the entries of a multi-release jar which the JVM reads from
+     *         <code>META-INF/versions/N/</code>, 9 &lt;= N &lt;= <code>version</code>, named as
+     *         the base entries they replace, e.g. <code>com/foo/Bar.class</code>. empty if the jar
+     *         is not a multi-release jar.
+     */
+    public List<String> getVersionedEntries(int version) {
+        final List<String> ret = new ArrayList<>();
+        if (!multiRelease) {
+            return ret;
+        }
+        for (String packageName : packages) {
+            if (!packageName.startsWith(VERSIONS)) {
+                continue;
+            }
+            final int end = packageName.indexOf('/', VERSIONS.length());
+            final int n;
+            try {
+                n = Integer.parseInt(packageName.substring(VERSIONS.length(),
+                        end < 0 ? packageName.length() : end));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (n < 9 || n > version) {
+                continue;
+            }
+            final int prefixLength = end < 0 ? packageName.length() + 1 : end + 1;
+            for (String entry : getEntries(packageName)) {
+                ret.add(entry.substring(prefixLength));
+            }
+        }
+        return ret;
+    }
+
+    public boolean hasPackage(String packageName) {
+        return findPackage(packageName) >= 0;
+    }
+
+    /**
+     * @return all entry names of the jar, directories excluded.
+     */
+    public List<String> getEntries() {
+        final List<String> ret = new ArrayList<>();
+        for (int i = 0; i < packages.length; ++i) {
+            final String prefix = packages[i].isEmpty() ? "" : packages[i] + "/";
+            final ByteBuffer buffer = entries.duplicate();
+            buffer.position(offsets[i]);
+            for (int j = 0; j < counts[i]; ++j) {
+                ret.add(prefix + readString(buffer));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the entry names of a package, e.g. <code>com/foo/Bar.class</code> for
+     *         <code>com/foo</code>, empty if the jar has no such package.
+     */
+    public List<String> getEntries(String packageName) {
+        final List<String> ret = new ArrayList<>();
+        final int i = findPackage(packageName);
+        if (i < 0) {
+            return ret;
+        }
+        final String prefix = packageName.isEmpty() ? "" : packageName + "/";
+        final ByteBuffer buffer = entries.duplicate();
+        buffer.position(offsets[i]);
+        for (int j = 0; j < counts[i]; ++j) {
+            ret.add(prefix + readString(buffer));
+        }
+        return ret;
+    }
+
+    private int findPackage(String packageName) {
+        int low = 0;
+        int high = packages.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = packages[mid].compareTo(packageName);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param multiRelease set to true if the jar is a multi-release jar
+     */
+    private static Map<String, List<String>> scan(File jar, boolean[] multiRelease)
+            throws IOException {
+        final Map<String, List<String>> ret = new TreeMap<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            final ZipEntry manifestEntry = zipFile.getEntry(MANIFEST);
+            if (manifestEntry != null) {
+                try (InputStream in = zipFile.getInputStream(manifestEntry)) {
+                    multiRelease[0] = Boolean.parseBoolean(
+                            new Manifest(in).getMainAttributes().getValue("Multi-Release"));
+                }
+            }
+            final Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                final ZipEntry entry = zipEntries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                final String name = entry.getName();
+                final String packageName = PackageIndex.packageOf(name);
+                List<String> names = ret.get(packageName);
+                if (names == null) {
+                    names = new ArrayList<>();
+                    ret.put(packageName, names);
+                }
+                names.add(packageName.isEmpty() ? name : name.substring(packageName.length() + 1));
+            }
+        }
+        return ret;
+    }
+
+    private static byte[] toBytes(Map<String, List<String>> content, boolean multiRelease,
+            File jar) throws IOException {
+        final ByteArrayOutputStream names = new ByteArrayOutputStream();
+        final DataOutputStream namesOut = new DataOutputStream(names);
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        final DataOutputStream tableOut = new DataOutputStream(table);
+        tableOut.writeInt(content.size());
+        for (Map.Entry<String, List<String>> entry : content.entrySet()) {
+            writeString(tableOut, entry.getKey());
+            tableOut.writeInt(namesOut.size());
+            tableOut.writeInt(entry.getValue().size());
+            for (String name : entry.getValue()) {
+                writeString(namesOut, name);
+            }
+        }
+        final ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(ret);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(jar.length());
+        out.writeLong(jar.lastModified());
+        writeString(out, jar.getAbsolutePath());
+        out.writeByte(multiRelease ? 1 : 0);
+        table.writeTo(out);
+        names.writeTo(out);
+        out.flush();
+        return ret.toByteArray();
+    }
+
+    /**
+     * @param jar the jar the index must match, <code>null</code> to skip the check
+     * @return the index, or <code>null</code> if it is stale or corrupted
+     */
+    private static JarIndex read(ByteBuffer buffer, File jar) {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            final long size = buffer.getLong();
+            final long lastModified = buffer.getLong();
+            final String path = readString(buffer);
+            final boolean multiRelease = buffer.get() != 0;
+            if (jar != null && (size != jar.length() || lastModified != jar.lastModified()
+                    || !path.equals(jar.getAbsolutePath()))) {
+                return null;
+            }
+            final int n = buffer.getInt();
+            final String[] packages = new String[n];
+            final int[] offsets = new int[n];
+            final int[] counts = new int[n];
+            for (int i = 0; i < n; ++i) {
+                packages[i] = readString(buffer);
+                offsets[i] = buffer.getInt();
+                counts[i] = buffer.getInt();
+            }
+            return new JarIndex(packages, offsets, counts, buffer.slice(), multiRelease);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and friends, the file is truncated.
+            return null;
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void store(File indexFile, final byte[] bytes) {
+        Utils.writeCache(indexFile, new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private static String indexName(File jar) {
+        return sha1(jar.getAbsolutePath()) + ".idx";
+    }
+
+    static String sha1(String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
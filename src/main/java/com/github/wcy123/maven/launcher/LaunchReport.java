@@ -0,0 +1,227 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Where the time of one launch went, phase by phase, and what its class loaders did.
+ *
+ * The phases are consecutive: {@link #begin} ends the current phase and starts the next one. The
+ * report is written as JSON by {@link #write}, and summed up over the launches of the JVM by
+ * {@link LauncherMetrics}.
+ */
+public class LaunchReport {
+    private final String artifact;
+    private String mode;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private String mainClass;
+    private String phase;
+    private long phaseStartNanos;
+    private long totalNanos = -1;
+    private LookupCounters counters;
+    private Map<URL, LookupCounters> memberCounters = Collections.emptyMap();
+    private LoaderStatistics statistics;
+
+    /**
+     * @param artifact the coordinate of the launched artifact
+     * @param mode how the launch runs, e.g. <code>in-process</code>
+     */
+    public LaunchReport(String artifact, String mode) {
+        this.artifact = artifact;
+        this.mode = mode;
+    }
+
+    /**
+     * Ends the current phase and starts <code>name</code>. A phase which is begun again adds to
+     * its previous time.
+     */
+    public void begin(String name) {
+        final long now = System.nanoTime();
+        endPhase(now);
+        phase = name;
+        phaseStartNanos = now;
+    }
+
+    /**
+     * Ends the current phase and the launch.
+     */
+    public void end() {
+        if (totalNanos >= 0) {
+            return;
+        }
+        final long now = System.nanoTime();
+        endPhase(now);
+        totalNanos = now - startNanos;
+    }
+
+    private void endPhase(long now) {
+        if (phase != null) {
+            final Long previous = phases.get(phase);
+            phases.put(phase, (previous == null ? 0 : previous) + now - phaseStartNanos);
+            phase = null;
+        }
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public void setMainClass(String mainClass) {
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * @param counters the counters of the group which ran the launch
+     * @param memberCounters the counters of each jar of the group
+     */
+    public void setCounters(LookupCounters counters, Map<URL, LookupCounters> memberCounters) {
+        this.counters = counters;
+        this.memberCounters = memberCounters;
+    }
+
+    public void setStatistics(LoaderStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public String getArtifact() {
+        return artifact;
+    }
+
+    /**
+     * @return milliseconds per phase, in the order the phases were first begun.
+     */
+    public Map<String, Long> getPhaseMillis() {
+        final Map<String, Long> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue() / 1000000);
+        }
+        return ret;
+    }
+
+    /**
+     * @return milliseconds from the creation of the report to {@link #end}, -1 before.
+     */
+    public long getTotalMillis() {
+        return totalNanos < 0 ? -1 : totalNanos / 1000000;
+    }
+
+    /**
+     * @return the counters of the launch, <code>null</code> if it did not run in this JVM.
+     */
+    public LookupCounters getCounters() {
+        return counters;
+    }
+
+    public void write(File file) throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        try (Writer writer =
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"artifact\": ").append(quote(artifact)).append(",\n");
+        sb.append("  \"mainClass\": ").append(quote(mainClass)).append(",\n");
+        sb.append("  \"mode\": ").append(quote(mode)).append(",\n");
+        sb.append("  \"totalMillis\": ").append(millis(totalNanos)).append(",\n");
+        sb.append("  \"phases\": [");
+        String separator = "\n";
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            sb.append(separator).append("    {\"name\": ").append(quote(entry.getKey()))
+                    .append(", \"millis\": ").append(millis(entry.getValue())).append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  ]");
+        if (counters != null) {
+            sb.append(",\n  \"lookups\": ");
+            appendCounters(sb, counters);
+            sb.append(",\n  \"jars\": [");
+            separator = "\n";
+            for (Map.Entry<URL, LookupCounters> entry : memberCounters.entrySet()) {
+                final LookupCounters c = entry.getValue();
+                sb.append(separator).append("    {\"url\": ")
+                        .append(quote(String.valueOf(entry.getKey())))
+                        .append(", \"classesDefined\": ").append(c.getClassesDefined())
+                        .append(", \"bytesRead\": ").append(c.getBytesRead())
+                        .append(", \"findClassMillis\": ").append(millis(c.getFindClassNanos()))
+                        .append('}');
+                separator = ",\n";
+            }
+            sb.append("\n  ]");
+        }
+        if (statistics != null) {
+            sb.append(",\n  \"loaders\": {\"liveLoaders\": ").append(statistics.getLiveLoaders())
+                    .append(", \"idleLoaders\": ").append(statistics.getIdleLoaders())
+                    .append(", \"definedClasses\": ").append(statistics.getDefinedClasses())
+                    .append("},\n  \"jvmMetaspaceUsed\": ")
+                    .append(statistics.getJvmMetaspaceUsed());
+        }
+        sb.append("\n}\n");
+        return sb.toString();
+    }
+
+    private static void appendCounters(StringBuilder sb, LookupCounters c) {
+        sb.append("{\"lookups\": ").append(c.getLookups())
+                .append(", \"bloomRejections\": ").append(c.getBloomRejections())
+                .append(", \"negativeHits\": ").append(c.getNegativeHits())
+                .append(", \"probes\": ").append(c.getProbes())
+                .append(", \"misses\": ").append(c.getMisses())
+                .append(", \"classesDefined\": ").append(c.getClassesDefined())
+                .append(", \"bytesRead\": ").append(c.getBytesRead())
+                .append(", \"findClassMillis\": ").append(millis(c.getFindClassNanos()))
+                .append('}');
+    }
+
+    private static String millis(long nanos) {
+        return nanos < 0 ? "null" : String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * @return the phases, e.g. <code>resolve=120ms, loaders=8ms, run=950ms</code>.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : getPhaseMillis().entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+        }
+        return sb.append(", total=").append(getTotalMillis()).append("ms").toString();
+    }
+}
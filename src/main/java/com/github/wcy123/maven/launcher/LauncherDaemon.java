@@ -0,0 +1,340 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A background JVM which keeps the shared jar loaders, and the JIT-compiled launcher, warm between
+ * launches.
+ *
+ * The daemon listens on a loopback port. The port and a random token are written to a file which
+ * only the owner can read; a client must present the token. Each request names the classpath, the
+ * Main-Class and the arguments of a launch. The daemon creates a {@link SharedUrlClassLoader}
+ * group for it, in which the application jar gets a loader of its own, runs <code>main</code> on
+ * its own thread and streams what the launch writes to {@link System#out} and {@link System#err}
+ * back to the client, followed by the exit code once the non-daemon threads of the launch
+ * ended. Standard input is not forwarded. A request is
+ * acknowledged before its launch starts, a client must not run a launch again once it was
+ * accepted.
+ *
+ * A daemon is started for one working directory and one environment, see {@link DaemonClient}, and
+ * exits after being idle for the given time. A launch which calls {@link System#exit} ends the
+ * daemon as well. What the launches wrote is sent before it exits, but not the status, so that
+ * their clients see the connection end without an exit code.
+ */
+public class LauncherDaemon {
+    static final int PROTOCOL = 3;
+    static final int STDOUT = 1;
+    static final int STDERR = 2;
+    static final int EXIT = 3;
+    static final int REJECTED = 4;
+    static final int ACCEPTED = 5;
+
+    private static final InheritableThreadLocal<Sink> sinks = new InheritableThreadLocal<>();
+
+    private final File portFile;
+    private final String key;
+    private final long idleMillis;
+    private final String token;
+    private final AtomicInteger active = new AtomicInteger();
+
+    private LauncherDaemon(File portFile, String key, long idleMillis) {
+        this.portFile = portFile;
+        this.key = key;
+        this.idleMillis = idleMillis;
+        this.token = newToken();
+    }
+
+    /**
+     * @return a random token which a client must present.
+     */
+    static String newToken() {
+        final byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param args the port file, the key of the daemon and the idle timeout in milliseconds.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: LauncherDaemon <port file> <key> <idle timeout in ms>");
+            System.exit(2);
+        }
+        new LauncherDaemon(new File(args[0]), args[1], Long.parseLong(args[2])).serve();
+    }
+
+    private void serve() throws IOException {
+        System.setOut(new PrintStream(new RoutingOutputStream(System.out, STDOUT), true));
+        System.setErr(new PrintStream(new RoutingOutputStream(System.err, STDERR), true));
+        flushOnExit();
+        // the metrics are visible through JMX before the first launch ends.
+        LauncherMetrics.get();
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(1000, idleMillis)));
+            writePortFile(portFile, server.getLocalPort(), token);
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (active.get() == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                final Thread handler = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                }, "launcher-daemon-request");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } finally {
+            portFile.delete();
+        }
+    }
+
+    /**
+     * Sends what the launches wrote before the daemon exits, e.g. because one of them called
+     * {@link System#exit}.
+     */
+    private static void flushOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                System.out.flush();
+                System.err.flush();
+            }
+        }, "launcher-daemon-exit"));
+    }
+
+    private void handle(Socket socket) {
+        active.incrementAndGet();
+        try (Socket s = socket) {
+            final DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            final DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            if (in.readInt() != PROTOCOL || !token.equals(in.readUTF())) {
+                return;
+            }
+            final Sink sink = new Sink(out);
+            if (!key.equals(in.readUTF())) {
+                sink.reject("the daemon was started for another directory or environment");
+                return;
+            }
+            final String indexDirectory = in.readUTF();
+            final String aggregateDirectory = in.readUTF();
+            final String mainClass = in.readUTF();
+            final URL[] urls = new URL[in.readInt()];
+            for (int i = 0; i < urls.length; ++i) {
+                urls[i] = NestedJars.toURL(in.readUTF());
+            }
+            final String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; ++i) {
+                args[i] = in.readUTF();
+            }
+            sink.accept();
+            sink.exit(launch(sink, indexDirectory, aggregateDirectory, mainClass, urls, args));
+        } catch (IOException e) {
+            // the client went away, nothing to report to.
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private int launch(final Sink sink, String indexDirectory, String aggregateDirectory,
+            final String mainClass, URL[] urls, final String[] args) throws IOException {
+        final LaunchReport report = new LaunchReport(urls[0].toString(), "daemon");
+        report.setMainClass(mainClass);
+        report.begin("loaders");
+        final AggregateResources aggregates = aggregateDirectory.isEmpty() ? null
+                : AggregateResources.load(new File(aggregateDirectory), toFiles(urls));
+        // the application jar is loaded afresh, its dependencies stay warm.
+        final SharedUrlClassLoader classLoader = SharedUrlClassLoader.create(urls,
+                indexDirectory.isEmpty() ? null : new File(indexDirectory), 1, aggregates);
+        report.begin("run");
+        try {
+            final int[] exitCode = {0};
+            // the threads the launch starts are in its group, those of other launches are not.
+            final ThreadGroup group = new ThreadGroup(mainClass);
+            final Set<Thread> existing = MainThreads.liveThreads();
+            final Thread runnerThread = new Thread(group, new Runnable() {
+                @Override
+                public void run() {
+                    sinks.set(sink);
+                    try {
+                        // static initializers write to the client too.
+                        final Method main = Class.forName(mainClass, true, classLoader)
+                                .getMethod("main", String[].class);
+                        main.invoke(null, new Object[] {args});
+                    } catch (ClassNotFoundException | NoSuchMethodException e) {
+                        System.err.println("cannot launch " + mainClass + ": " + e);
+                        exitCode[0] = 1;
+                    } catch (IllegalAccessException | InvocationTargetException e) {
+                        e.printStackTrace();
+                        exitCode[0] = 1;
+                    }
+                }
+            }, "main");
+            // as in a JVM of its own, the threads main starts are not daemons unless it says so.
+            runnerThread.setDaemon(false);
+            runnerThread.setContextClassLoader(classLoader);
+            runnerThread.start();
+            runnerThread.join();
+            MainThreads.joinNonDaemonThreads(existing, group);
+            return exitCode[0];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            report.begin("close");
+            report.setCounters(classLoader.getLookupCounters(), classLoader.getMemberCounters());
+            classLoader.close();
+            report.setStatistics(SharedUrlClassLoader.getStatistics());
+            report.end();
+            LauncherMetrics.get().record(report);
+        }
+    }
+
+    /**
+     * @return the files of <code>urls</code>, an empty list if one of them is not a file.
+     */
+    private static List<File> toFiles(URL[] urls) {
+        final List<File> ret = new ArrayList<>(urls.length);
+        for (URL url : urls) {
+            final File file = PackageIndex.toFile(url);
+            if (file == null) {
+                return Collections.emptyList();
+            }
+            ret.add(file);
+        }
+        return ret;
+    }
+
+    /**
+     * Writes <code>port</code> and <code>token</code> to <code>portFile</code>, which only the
+     * owner can read.
+     */
+    static void writePortFile(File portFile, int port, String token) throws IOException {
+        final byte[] content = (port + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8);
+        Utils.writeAtomically(portFile, true, new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(content);
+            }
+        });
+    }
+
+    /**
+     * The frames sent back to one client.
+     */
+    static class Sink {
+        private final DataOutputStream out;
+        private boolean exited;
+
+        Sink(DataOutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void write(int channel, byte[] b, int off, int len) throws IOException {
+            out.writeByte(channel);
+            out.writeInt(len);
+            out.write(b, off, len);
+            out.flush();
+        }
+
+        synchronized void accept() throws IOException {
+            out.writeByte(ACCEPTED);
+            out.flush();
+        }
+
+        /**
+         * Sends the exit code, only the first one counts.
+         */
+        synchronized void exit(int code) throws IOException {
+            if (exited) {
+                return;
+            }
+            exited = true;
+            out.writeByte(EXIT);
+            out.writeInt(code);
+            out.flush();
+        }
+
+        private synchronized void reject(String reason) throws IOException {
+            out.writeByte(REJECTED);
+            out.writeUTF(reason);
+            out.flush();
+        }
+    }
+
+    /**
+     * Sends what a launch writes to its client, and what other threads write to the original
+     * stream.
+     */
+    private static class RoutingOutputStream extends OutputStream {
+        private final OutputStream original;
+        private final int channel;
+
+        private RoutingOutputStream(OutputStream original, int channel) {
+            this.original = original;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            final Sink sink = sinks.get();
+            if (sink == null) {
+                original.write(b, off, len);
+                return;
+            }
+            try {
+                sink.write(channel, b, off, len);
+            } catch (IOException e) {
+                // the client went away, the launch goes on.
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (sinks.get() == null) {
+                original.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.wcy123.maven.launcher;
+
+import java.util.Map;
+
+/**
+ * The launcher metrics of a JVM, registered as <code>{@value LauncherMetrics#OBJECT_NAME}</code>.
+ * The counters are summed over all the launches which ran in the JVM.
+ */
+public interface LauncherMXBean {
+    long getLaunches();
+
+    /**
+     * @return milliseconds per phase of the last launch.
+     */
+    Map<String, Long> getLastPhaseMillis();
+
+    long getLastTotalMillis();
+
+    /**
+     * @return the report of the last launch, as JSON.
+     */
+    String getLastReport();
+
+    long getLookups();
+
+    long getMisses();
+
+    long getProbes();
+
+    long getClassesDefined();
+
+    long getBytesRead();
+
+    long getFindClassMillis();
+
+    int getLiveLoaders();
+
+    int getIdleLoaders();
+
+    /**
+     * @return bytes of metaspace used by the whole JVM, the launched applications and the
+     *         launcher included, not by the shared loaders alone.
+     */
+    long getJvmMetaspaceUsed();
+}
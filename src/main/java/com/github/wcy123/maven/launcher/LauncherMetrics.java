@@ -0,0 +1,143 @@
+package com.github.wcy123.maven.launcher;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Sums up the {@link LaunchReport}s of a JVM and exposes them through JMX, so that a daemon, or a
+ * long running build, can be monitored.
+ */
+public class LauncherMetrics implements LauncherMXBean {
+    public static final String OBJECT_NAME = "com.github.wcy123.maven.launcher:type=Launcher";
+
+    private static LauncherMetrics instance;
+
+    private final AtomicLong launches = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong classesDefined = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong findClassNanos = new AtomicLong();
+    private volatile LaunchReport last;
+
+    private LauncherMetrics() {
+    }
+
+    /**
+     * @return the metrics of this JVM, registered with the platform MBean server on the first
+     *         call.
+     */
+    public static synchronized LauncherMetrics get() {
+        if (instance == null) {
+            instance = new LauncherMetrics();
+            register(instance);
+        }
+        return instance;
+    }
+
+    private static void register(LauncherMetrics metrics) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(metrics, name);
+            } catch (InstanceAlreadyExistsException e) {
+                // registered by an earlier class realm of the plugin.
+                server.unregisterMBean(name);
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            // the metrics are still summed up, only not visible.
+        }
+    }
+
+    public void record(LaunchReport report) {
+        launches.incrementAndGet();
+        final LookupCounters counters = report.getCounters();
+        if (counters != null) {
+            lookups.addAndGet(counters.getLookups());
+            misses.addAndGet(counters.getMisses());
+            probes.addAndGet(counters.getProbes());
+            classesDefined.addAndGet(counters.getClassesDefined());
+            bytesRead.addAndGet(counters.getBytesRead());
+            findClassNanos.addAndGet(counters.getFindClassNanos());
+        }
+        last = report;
+    }
+
+    @Override
+    public long getLaunches() {
+        return launches.get();
+    }
+
+    @Override
+    public Map<String, Long> getLastPhaseMillis() {
+        final LaunchReport report = last;
+        return report == null ? Collections.<String, Long>emptyMap() : report.getPhaseMillis();
+    }
+
+    @Override
+    public long getLastTotalMillis() {
+        final LaunchReport report = last;
+        return report == null ? -1 : report.getTotalMillis();
+    }
+
+    @Override
+    public String getLastReport() {
+        final LaunchReport report = last;
+        return report == null ? null : report.toJson();
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getProbes() {
+        return probes.get();
+    }
+
+    @Override
+    public long getClassesDefined() {
+        return classesDefined.get();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getFindClassMillis() {
+        return findClassNanos.get() / 1000000;
+    }
+
+    @Override
+    public int getLiveLoaders() {
+        return SharedUrlClassLoader.getStatistics().getLiveLoaders();
+    }
+
+    @Override
+    public int getIdleLoaders() {
+        return SharedUrlClassLoader.getStatistics().getIdleLoaders();
+    }
+
+    @Override
+    public long getJvmMetaspaceUsed() {
+        return SharedUrlClassLoader.getStatistics().getJvmMetaspaceUsed();
+    }
+}
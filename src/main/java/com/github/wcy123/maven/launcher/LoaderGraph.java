@@ -0,0 +1,164 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+
+/**
+ * The {@link MavenClassLoader}s of a dependency graph, one per artifact, each linked to the
+ * loaders of the dependencies its pom declares.
+ *
+ * The graph is the one collected by {@link ParallelArtifactResolver#collectGraph}: a dependency
+ * which Maven mediated to another version, or which is declared more than once, is linked to the
+ * loader of the version which won, so that every artifact sees the same version of a dependency,
+ * as on a flat class path, but only the dependencies it declares.
+ */
+public class LoaderGraph implements Closeable {
+    private final DependencyNode graph;
+    private final Map<String, DependencyNode> nodes;
+    private final List<Artifact> artifacts;
+    private final Map<String, MavenClassLoader> loaders = new LinkedHashMap<>();
+
+    private LoaderGraph(DependencyNode graph, Map<String, DependencyNode> nodes,
+            List<Artifact> artifacts) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.artifacts = artifacts;
+    }
+
+    /**
+     * Resolves the artifacts of <code>graph</code>, the loaders are created by {@link #open}.
+     */
+    public static LoaderGraph resolve(DependencyNode graph, ParallelArtifactResolver resolver,
+            ProjectBuildingRequest buildingRequest) throws ArtifactResolverException {
+        final Map<String, DependencyNode> nodes = new LinkedHashMap<>();
+        addWinners(graph, nodes);
+        final List<Artifact> artifacts = new ArrayList<>(nodes.size());
+        for (DependencyNode node : nodes.values()) {
+            artifacts.add(toArtifact(node));
+        }
+        return new LoaderGraph(graph, nodes, resolver.resolve(buildingRequest, artifacts));
+    }
+
+    /**
+     * Creates the loaders of the graph and links each one to its dependencies.
+     *
+     * @param indexDirectory where the index of each jar is cached between launches,
+     *        <code>null</code> to scan the jars every time.
+     * @return the loader of the launched artifact.
+     */
+    public MavenClassLoader open(File indexDirectory) throws IOException {
+        if (!loaders.isEmpty()) {
+            throw new IllegalStateException("the graph is open already");
+        }
+        try {
+            for (Artifact artifact : artifacts) {
+                final String key = MavenClassLoader.toKey(artifact);
+                loaders.put(key, new MavenClassLoader(artifact.getFile(), indexDirectory));
+            }
+            for (Map.Entry<String, DependencyNode> entry : nodes.entrySet()) {
+                final List<MavenClassLoader> dependencies = new ArrayList<>();
+                for (DependencyNode child : entry.getValue().getChildren()) {
+                    final MavenClassLoader dependency = loaders.get(key(winner(child)));
+                    if (dependency != null && !dependencies.contains(dependency)) {
+                        dependencies.add(dependency);
+                    }
+                }
+                loaders.get(entry.getKey()).setDependencies(
+                        dependencies.toArray(new MavenClassLoader[dependencies.size()]));
+            }
+            for (MavenClassLoader loader : loaders.values()) {
+                loader.computeVisitOrder();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        return loaders.get(key(graph));
+    }
+
+    /**
+     * adds the nodes which won their conflicts, in classpath order.
+     */
+    private static void addWinners(DependencyNode node, Map<String, DependencyNode> nodes) {
+        final DependencyNode winner = winner(node);
+        final String key = key(winner);
+        if (nodes.containsKey(key)) {
+            return;
+        }
+        nodes.put(key, winner);
+        for (DependencyNode child : winner.getChildren()) {
+            addWinners(child, nodes);
+        }
+    }
+
+    private static DependencyNode winner(DependencyNode node) {
+        final Object winner = node.getData().get(ConflictResolver.NODE_DATA_WINNER);
+        return winner instanceof DependencyNode ? (DependencyNode) winner : node;
+    }
+
+    private static String key(DependencyNode node) {
+        return MavenClassLoader.toKey(toArtifact(node));
+    }
+
+    private static Artifact toArtifact(DependencyNode node) {
+        final Artifact ret = RepositoryUtils.toArtifact(node.getArtifact());
+        if (node.getDependency() != null) {
+            ret.setScope(node.getDependency().getScope());
+        }
+        return ret;
+    }
+
+    /**
+     * @return the files of the graph, in classpath order, the launched artifact first.
+     */
+    public List<File> getFiles() {
+        final List<File> ret = new ArrayList<>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            ret.add(artifact.getFile());
+        }
+        return ret;
+    }
+
+    /**
+     * @return the classes defined from each jar, in classpath order.
+     */
+    public Map<URL, LookupCounters> getCounters() throws IOException {
+        final Map<URL, LookupCounters> ret = new LinkedHashMap<>();
+        for (MavenClassLoader loader : loaders.values()) {
+            ret.put(loader.getFile().toURI().toURL(), loader.getDefinitionCounters());
+        }
+        return ret;
+    }
+
+    /**
+     * Closes the loaders created by {@link #open}.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (MavenClassLoader loader : loaders.values()) {
+            try {
+                loader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        loaders.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.wcy123.maven.launcher;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+
+/**
+ * A snapshot of what the shared loaders of {@link SharedUrlClassLoader} retain. The metaspace is
+ * the one of the whole JVM, which does not report it per loader.
+ */
+public class LoaderStatistics {
+    private final int liveLoaders;
+    private final int idleLoaders;
+    private final int definedClasses;
+    private final long jvmMetaspaceUsed;
+
+    LoaderStatistics(int liveLoaders, int idleLoaders, int definedClasses) {
+        this.liveLoaders = liveLoaders;
+        this.idleLoaders = idleLoaders;
+        this.definedClasses = definedClasses;
+        this.jvmMetaspaceUsed = jvmMetaspaceUsed();
+    }
+
+    /**
+     * @return number of jar loaders, idle ones included.
+     */
+    public int getLiveLoaders() {
+        return liveLoaders;
+    }
+
+    /**
+     * @return number of jar loaders which no launch uses any more.
+     */
+    public int getIdleLoaders() {
+        return idleLoaders;
+    }
+
+    /**
+     * @return number of classes defined by the jar loaders.
+     */
+    public int getDefinedClasses() {
+        return definedClasses;
+    }
+
+    /**
+     * @return bytes of metaspace used by the whole JVM, -1 if the JVM has no metaspace pool.
+     */
+    public long getJvmMetaspaceUsed() {
+        return jvmMetaspaceUsed;
+    }
+
+    private static long jvmMetaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "liveLoaders=" + liveLoaders + ", idleLoaders=" + idleLoaders + ", definedClasses="
+                + definedClasses + ", jvmMetaspaceUsed=" + jvmMetaspaceUsed;
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * A manifest of the artifacts of the local repository which launches used, each with its file
+ * and the SHA-1 checksum of the file, so that an offline launch resolves them without asking any
+ * repository.
+ *
+ * A file whose length and modification time are the recorded ones is trusted as is. A file which
+ * changed is checked against its checksum, and no longer resolved from the manifest if it does not
+ * match, e.g. when it was downloaded again from another repository. The layout of the manifest is
+ * one line per artifact
+ *
+ * <pre>
+ * groupId:artifactId:type:classifier:version  path  length  last modified time  sha1
+ * </pre>
+ *
+ * separated by tabs.
+ */
+public class LocalManifest {
+    private static final String HEADER = "# my-maven-launcher local repository manifest v1";
+
+    private final File file;
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private boolean modified;
+
+    private LocalManifest(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the manifest kept in <code>file</code>, empty if there is none or it cannot be
+     *         read.
+     */
+    public static LocalManifest load(File file) {
+        final LocalManifest ret = new LocalManifest(file);
+        if (!file.isFile()) {
+            return ret;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                return ret;
+            }
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                final String[] fields = line.split("\t");
+                if (fields.length != 5) {
+                    continue;
+                }
+                try {
+                    ret.entries.put(fields[0], new Entry(new File(fields[1]),
+                            Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4]));
+                } catch (NumberFormatException e) {
+                    // a damaged line, the artifact is resolved again.
+                }
+            }
+        } catch (IOException e) {
+            ret.entries.clear();
+        }
+        return ret;
+    }
+
+    /**
+     * @return the file of <code>artifact</code>, or <code>null</code> if it is not in the
+     *         manifest or its file changed since it was recorded.
+     */
+    public File get(Artifact artifact) {
+        final String key = toKey(artifact);
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        final File jar = entry.file;
+        if (jar.length() == entry.length && jar.lastModified() == entry.lastModified) {
+            return jar;
+        }
+        try {
+            if (jar.isFile() && entry.sha1.equals(sha1(jar))) {
+                // touched only, e.g. copied with a new time.
+                entries.put(key, new Entry(jar, jar.length(), jar.lastModified(), entry.sha1));
+                modified = true;
+                return jar;
+            }
+        } catch (IOException e) {
+            // unreadable, it is resolved again.
+        }
+        entries.remove(key);
+        modified = true;
+        return null;
+    }
+
+    /**
+     * Records the file of a resolved artifact.
+     */
+    public void put(Artifact artifact) throws IOException {
+        final File jar = artifact.getFile();
+        final String key = toKey(artifact);
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.file.equals(jar) && jar.length() == entry.length
+                && jar.lastModified() == entry.lastModified) {
+            return;
+        }
+        entries.put(key, new Entry(jar, jar.length(), jar.lastModified(), sha1(jar)));
+        modified = true;
+    }
+
+    /**
+     * Stores the manifest if it changed, with {@link Utils#writeCache}: the next offline launch
+     * records the artifacts again.
+     */
+    public void store() {
+        if (!modified) {
+            return;
+        }
+        modified = !Utils.writeCache(file, new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                writer.write(HEADER + "\n");
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    final Entry value = entry.getValue();
+                    writer.write(entry.getKey() + "\t" + value.file.getAbsolutePath() + "\t"
+                            + value.length + "\t" + value.lastModified + "\t" + value.sha1 + "\n");
+                }
+                writer.flush();
+            }
+        });
+    }
+
+    private static String toKey(Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getType()
+                + ":" + (artifact.getClassifier() == null ? "" : artifact.getClassifier()) + ":"
+                + artifact.getVersion();
+    }
+
+    static String sha1(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static class Entry {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final String sha1;
+
+        private Entry(File file, long length, long lastModified, String sha1) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+        }
+    }
+}
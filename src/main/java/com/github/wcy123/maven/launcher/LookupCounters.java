@@ -0,0 +1,118 @@
+package com.github.wcy123.maven.launcher;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how the lookups of a class loader were answered and what defining its classes cost.
+ *
+ * The counters are {@link LongAdder}s, which the threads of a class loading burst update without
+ * contending on a shared cache line.
+ */
+public class LookupCounters {
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder bloomRejections = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder classesDefined = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder findClassNanos = new LongAdder();
+
+    void lookup() {
+        lookups.increment();
+    }
+
+    void bloomRejection() {
+        bloomRejections.increment();
+        misses.increment();
+    }
+
+    void negativeHit() {
+        negativeHits.increment();
+        misses.increment();
+    }
+
+    void probe() {
+        probes.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void classDefined(long bytes) {
+        classesDefined.increment();
+        if (bytes > 0) {
+            bytesRead.add(bytes);
+        }
+    }
+
+    void findClass(long nanos) {
+        findClassNanos.add(nanos);
+    }
+
+    /**
+     * @return number of class and resource lookups asked to the loader.
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return number of lookups rejected by the bloom filter without probing any jar.
+     */
+    public long getBloomRejections() {
+        return bloomRejections.sum();
+    }
+
+    /**
+     * @return number of lookups answered by the negative cache without probing any jar.
+     */
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    /**
+     * @return number of times a member jar was actually asked for an entry.
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * @return number of lookups which found nothing, rejected ones included.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of classes the loader defined.
+     */
+    public long getClassesDefined() {
+        return classesDefined.sum();
+    }
+
+    /**
+     * @return bytes of class files read from memory mapped jars. classes which
+     *         {@link java.net.URLClassLoader} reads are defined without their size being known.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * @return nanoseconds spent in <code>findClass</code>, defining the classes included.
+     */
+    public long getFindClassNanos() {
+        return findClassNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "lookups=" + getLookups() + ", bloomRejections=" + getBloomRejections()
+                + ", negativeHits=" + getNegativeHits() + ", probes=" + getProbes() + ", misses="
+                + getMisses() + ", classesDefined=" + getClassesDefined() + ", bytesRead="
+                + getBytesRead() + ", findClassMillis=" + getFindClassNanos() / 1000000;
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.wcy123.maven.launcher;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Creates the threads which run <code>main</code> of a launch, platform threads or, on a JVM
+ * which has them, virtual threads, and waits for the threads a launch starts.
+ *
+ * The plugin is compiled for Java 8, so virtual threads are created through reflection.
+ */
+public class MainThreads {
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            // before Java 19.
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private MainThreads() {
+    }
+
+    /**
+     * @return true if <code>model</code> is a thread model this class knows.
+     */
+    public static boolean isThreadModel(String model) {
+        return PLATFORM.equals(model) || VIRTUAL.equals(model);
+    }
+
+    /**
+     * @return true if this JVM can create virtual threads, i.e. Java 21 or later, or Java 19 and
+     *         20 with preview features enabled.
+     */
+    public static boolean supportsVirtualThreads() {
+        return newVirtualThread("probe", new Runnable() {
+            @Override
+            public void run() {
+            }
+        }) != null;
+    }
+
+    /**
+     * @param model {@link #PLATFORM} or {@link #VIRTUAL}
+     * @return a thread which is not started yet, a platform thread if <code>model</code> is
+     *         {@link #VIRTUAL} but this JVM has no virtual threads.
+     */
+    public static Thread newThread(String model, String name, Runnable task) {
+        if (VIRTUAL.equals(model)) {
+            final Thread ret = newVirtualThread(name, task);
+            if (ret != null) {
+                return ret;
+            }
+        }
+        return new Thread(task, name);
+    }
+
+    private static Thread newVirtualThread(String name, Runnable task) {
+        if (OF_VIRTUAL == null) {
+            return null;
+        }
+        try {
+            final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+            return (Thread) UNSTARTED.invoke(builder, task);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // a preview API which is not enabled throws UnsupportedOperationException.
+            return null;
+        }
+    }
+
+    /**
+     * @return the threads which are alive, to tell them from the threads a launch starts.
+     */
+    public static Set<Thread> liveThreads() {
+        return new HashSet<>(Thread.getAllStackTraces().keySet());
+    }
+
+    /**
+     * Waits for the threads which keep a JVM alive after <code>main</code> returned, the class
+     * loaders of a launch must stay open until they end.
+     *
+     * @param existing the threads which were alive before the launch started, which are not
+     *        waited for
+     * @param group the thread group of the launch, <code>null</code> to wait for the threads of
+     *        any group
+     */
+    public static void joinNonDaemonThreads(Set<Thread> existing, ThreadGroup group)
+            throws InterruptedException {
+        while (true) {
+            Thread alive = null;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread != Thread.currentThread() && !thread.isDaemon() && thread.isAlive()
+                        && !existing.contains(thread) && isIn(thread, group)
+                        && !"DestroyJavaVM".equals(thread.getName())) {
+                    alive = thread;
+                    break;
+                }
+            }
+            if (alive == null) {
+                return;
+            }
+            alive.join();
+        }
+    }
+
+    private static boolean isIn(Thread thread, ThreadGroup group) {
+        if (group == null) {
+            return true;
+        }
+        // null once the thread ended.
+        final ThreadGroup threadGroup = thread.getThreadGroup();
+        return threadGroup != null && group.parentOf(threadGroup);
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * The main attributes of the manifest of a jar which a launch needs, i.e. its entry point, its
+ * <code>Class-Path</code>, whether it is a multi-release jar, the packages it opens and the
+ * layout of a fat jar, see {@link NestedJars}.
+ *
+ * The attributes are kept per jar next to the resolved closures, keyed by the path, length and
+ * modification time of the jar, so that a launch does not open the jar to read its manifest. The
+ * cache file is a manifest itself, which holds these attributes only.
+ */
+public class ManifestMetadata {
+    private static final String[] ATTRIBUTES = {
+        "Main-Class", "Class-Path", "Multi-Release", "Add-Opens", "Start-Class",
+        "Spring-Boot-Classes", "Spring-Boot-Lib", "Spring-Boot-Classpath-Index"
+    };
+    private static final Attributes.Name JAR_PATH = new Attributes.Name("Launcher-Jar-Path");
+    private static final Attributes.Name JAR_LENGTH = new Attributes.Name("Launcher-Jar-Length");
+    private static final Attributes.Name JAR_LAST_MODIFIED =
+            new Attributes.Name("Launcher-Jar-Last-Modified");
+
+    private final Manifest manifest;
+
+    private ManifestMetadata(Manifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * @param directory where the metadata of jars is kept, <code>null</code> to read the manifest
+     *        every time.
+     * @param jar a jar file
+     * @return the metadata of <code>jar</code>, empty if it has no manifest.
+     * @throws IOException if the jar cannot be read
+     */
+    public static ManifestMetadata load(File directory, File jar) throws IOException {
+        final File file = directory == null ? null
+                : new File(directory, JarIndex.sha1(jar.getAbsolutePath()) + ".mf");
+        if (file != null && file.isFile()) {
+            final Manifest cached = read(file);
+            if (cached != null && isCurrent(cached.getMainAttributes(), jar)) {
+                return new ManifestMetadata(cached);
+            }
+        }
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (JarFile jarFile = new JarFile(jar)) {
+            final Manifest original = jarFile.getManifest();
+            if (original != null) {
+                for (String name : ATTRIBUTES) {
+                    final String value = original.getMainAttributes().getValue(name);
+                    if (value != null) {
+                        attributes.putValue(name, value);
+                    }
+                }
+            }
+        }
+        if (file != null) {
+            attributes.put(JAR_PATH, jar.getAbsolutePath());
+            attributes.put(JAR_LENGTH, Long.toString(jar.length()));
+            attributes.put(JAR_LAST_MODIFIED, Long.toString(jar.lastModified()));
+            store(file, manifest);
+        }
+        return new ManifestMetadata(manifest);
+    }
+
+    private static boolean isCurrent(Attributes attributes, File jar) {
+        return jar.getAbsolutePath().equals(attributes.getValue(JAR_PATH))
+                && Long.toString(jar.length()).equals(attributes.getValue(JAR_LENGTH))
+                && Long.toString(jar.lastModified()).equals(attributes.getValue(JAR_LAST_MODIFIED));
+    }
+
+    private static Manifest read(File file) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return new Manifest(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void store(File file, final Manifest manifest) {
+        Utils.writeCache(file, new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                manifest.write(out);
+            }
+        });
+    }
+
+    /**
+     * @return the kept attributes as a manifest, e.g. for {@link NestedJars}.
+     */
+    public Manifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * @return the <code>Main-Class</code>, or <code>null</code>.
+     */
+    public String getMainClass() {
+        return manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+    }
+
+    public boolean isMultiRelease() {
+        return Boolean.parseBoolean(manifest.getMainAttributes().getValue("Multi-Release"));
+    }
+
+    /**
+     * @return the packages the jar opens to the class path, e.g. <code>java.base/java.lang</code>.
+     */
+    public List<String> getAddOpens() {
+        return split(manifest.getMainAttributes().getValue("Add-Opens"));
+    }
+
+    /**
+     * @param jar the jar of this metadata
+     * @return the local files of the <code>Class-Path</code>, resolved against the directory of
+     *         <code>jar</code>, in order. entries which do not exist are left out, as the JVM
+     *         does.
+     */
+    public List<File> getClassPath(File jar) {
+        final List<String> entries =
+                split(manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH));
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<File> ret = new ArrayList<>(entries.size());
+        try {
+            final URL base = jar.toURI().toURL();
+            for (String entry : entries) {
+                final File file = PackageIndex.toFile(new URL(base, entry));
+                if (file != null && file.exists()) {
+                    ret.add(file);
+                }
+            }
+        } catch (MalformedURLException e) {
+            // an entry which is not a URL, the JVM ignores the remaining ones too.
+        }
+        return ret;
+    }
+
+    private static List<String> split(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> ret = new ArrayList<>();
+        for (String token : value.trim().split("\\s+")) {
+            ret.add(token);
+        }
+        return ret;
+    }
+}
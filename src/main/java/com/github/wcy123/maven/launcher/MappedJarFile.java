@@ -0,0 +1,365 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only jar file backed by a memory mapping of the whole file.
+ *
+ * The central directory is parsed once when the file is opened. Stored entries are served as
+ * slices of the mapping, without any copy, deflated entries are inflated with a pooled
+ * {@link Inflater}. ZIP64 archives are not supported, {@link #open} throws for them and the caller
+ * is expected to fall back to {@link java.util.jar.JarFile}.
+ *
+ * A stored jar inside the jar, or a directory of it, can be read in place as a jar of its own,
+ * see {@link #nested} and {@link #directory}. Both views share the mapping of the outer file.
+ *
+ * The versioned entries of a multi-release jar are resolved when it is opened, for the feature
+ * version of the running JVM: the entry of the highest version under
+ * <code>META-INF/versions/N/</code> which the JVM supports is served under the base name, so a
+ * lookup costs the same as in any other jar.
+ */
+public class MappedJarFile {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int MAX_POOLED_INFLATERS = 16;
+    private static final int CHUNK = 8192;
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private static final ConcurrentLinkedQueue<Inflater> inflaters =
+            new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<byte[]> chunks = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK];
+        }
+    };
+
+    private final File file;
+    private final ByteBuffer mapping;
+    private final Map<String, Entry> entries;
+    private volatile Manifest manifest;
+
+    private MappedJarFile(File file, ByteBuffer mapping, Map<String, Entry> entries) {
+        this.file = file;
+        this.mapping = mapping;
+        this.entries = entries;
+    }
+
+    public static MappedJarFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException("too large to be mapped: " + file);
+            }
+            final ByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            return create(file, mapping, readCentralDirectory(file, mapping));
+        }
+    }
+
+    /**
+     * @param name the name of a stored entry which is a jar, e.g.
+     *        <code>BOOT-INF/lib/foo.jar</code>
+     * @return the entry read as a jar, a view of the mapping of this file.
+     * @throws ZipException if there is no such entry or it is compressed.
+     */
+    public MappedJarFile nested(String name) throws IOException {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new ZipException("no entry " + name + " in " + file);
+        }
+        if (entry.method != STORED) {
+            throw new ZipException("nested jar " + name + " in " + file + " is compressed");
+        }
+        final ByteBuffer data = data(entry).order(ByteOrder.LITTLE_ENDIAN);
+        return create(file, data, readCentralDirectory(file, data));
+    }
+
+    /**
+     * @return the jar of <code>entries</code>, whose base entries are replaced by their versioned
+     *         ones for the running JVM if it is a multi-release jar.
+     */
+    private static MappedJarFile create(File file, ByteBuffer mapping, Map<String, Entry> entries)
+            throws IOException {
+        final MappedJarFile ret = new MappedJarFile(file, mapping, entries);
+        final int featureVersion = Utils.featureVersion();
+        if (featureVersion < 9 || !ret.isMultiRelease()) {
+            return ret;
+        }
+        // the version each replaced name is read from, the highest one wins.
+        final Map<String, Integer> versions = new HashMap<>();
+        final Map<String, Entry> versioned = new LinkedHashMap<>(entries);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            final String name = entry.getKey();
+            if (!name.startsWith(VERSIONS)) {
+                continue;
+            }
+            final int end = name.indexOf('/', VERSIONS.length());
+            final int version;
+            try {
+                version = end < 0 ? -1
+                        : Integer.parseInt(name.substring(VERSIONS.length(), end));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            final String baseName = name.substring(end + 1);
+            final Integer current = versions.get(baseName);
+            if (version >= 9 && version <= featureVersion
+                    && (current == null || current < version)) {
+                versions.put(baseName, version);
+                versioned.put(baseName, entry.getValue());
+            }
+        }
+        if (versions.isEmpty()) {
+            return ret;
+        }
+        final MappedJarFile jar = new MappedJarFile(file, mapping, versioned);
+        jar.manifest = ret.manifest;
+        return jar;
+    }
+
+    /**
+     * @param prefix a directory of this jar, e.g. <code>BOOT-INF/classes/</code>
+     * @return the entries under <code>prefix</code>, named relative to it, as a jar which shares
+     *         the mapping of this file.
+     */
+    public MappedJarFile directory(String prefix) {
+        final Map<String, Entry> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                ret.put(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+        return new MappedJarFile(file, mapping, ret);
+    }
+
+    /**
+     * @return the file this jar is read from, the outer file of a nested jar.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the names of the entries, directories excluded, in the order of the central
+     *         directory.
+     */
+    public Collection<String> getEntryNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @return true if the manifest declares a multi-release jar.
+     */
+    public boolean isMultiRelease() throws IOException {
+        final Manifest manifest = getManifest();
+        return manifest != null
+                && Boolean.parseBoolean(manifest.getMainAttributes().getValue("Multi-Release"));
+    }
+
+    public boolean hasEntry(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * @return the uncompressed size of an entry, or -1 if there is no such entry.
+     */
+    public long getSize(String name) {
+        final Entry entry = entries.get(name);
+        return entry == null ? -1 : entry.size;
+    }
+
+    /**
+     * @return the content of an entry, positioned at 0, or <code>null</code> if there is no such
+     *         entry. the buffer of a stored entry is a read-only view of the mapping.
+     */
+    public ByteBuffer getBytes(String name) throws IOException {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        final ByteBuffer data = data(entry);
+        if (entry.method == STORED) {
+            return data;
+        }
+        if (entry.method != DEFLATED) {
+            throw new ZipException("unsupported compression method " + entry.method + " of "
+                    + name + " in " + file);
+        }
+        return ByteBuffer.wrap(inflate(data, entry.size, name));
+    }
+
+    /**
+     * @return the manifest of the jar, or <code>null</code> if there is none.
+     */
+    public Manifest getManifest() throws IOException {
+        Manifest ret = manifest;
+        if (ret == null) {
+            final ByteBuffer bytes = getBytes("META-INF/MANIFEST.MF");
+            if (bytes == null) {
+                return null;
+            }
+            final byte[] array = new byte[bytes.remaining()];
+            bytes.get(array);
+            ret = new Manifest(new ByteArrayInputStream(array));
+            manifest = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * @return true if the jar carries signature files, whose verification needs {@link
+     *         java.util.jar.JarFile}.
+     */
+    public boolean isSigned() {
+        for (String name : entries.keySet()) {
+            if (name.startsWith("META-INF/") && (name.endsWith(".SF") || name.endsWith(".RSA")
+                    || name.endsWith(".DSA") || name.endsWith(".EC"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ByteBuffer data(Entry entry) throws ZipException {
+        final ByteBuffer buffer = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(entry.offset) != LOCAL_HEADER) {
+            throw new ZipException("invalid local header of " + entry.name + " in " + file);
+        }
+        final int nameLength = buffer.getShort(entry.offset + 26) & 0xffff;
+        final int extraLength = buffer.getShort(entry.offset + 28) & 0xffff;
+        final int start = entry.offset + 30 + nameLength + extraLength;
+        buffer.limit(start + entry.compressedSize);
+        buffer.position(start);
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    private byte[] inflate(ByteBuffer data, int size, String name) throws ZipException {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        final byte[] ret = new byte[size];
+        final byte[] chunk = chunks.get();
+        try {
+            int n = 0;
+            boolean padded = false;
+            while (n < size) {
+                if (inflater.needsInput()) {
+                    final int length = Math.min(chunk.length, data.remaining());
+                    if (length == 0) {
+                        if (padded) {
+                            break;
+                        }
+                        // nowrap mode may need one extra byte to finish.
+                        padded = true;
+                        inflater.setInput(new byte[1]);
+                    } else {
+                        data.get(chunk, 0, length);
+                        inflater.setInput(chunk, 0, length);
+                    }
+                }
+                final int inflated = inflater.inflate(ret, n, size - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != size) {
+                throw new ZipException("truncated entry " + name + " in " + file);
+            }
+            return ret;
+        } catch (DataFormatException e) {
+            throw new ZipException("corrupted entry " + name + " in " + file + ": "
+                    + e.getMessage());
+        } finally {
+            inflater.reset();
+            if (inflaters.size() < MAX_POOLED_INFLATERS) {
+                inflaters.offer(inflater);
+            } else {
+                inflater.end();
+            }
+        }
+    }
+
+    private static Map<String, Entry> readCentralDirectory(File file, ByteBuffer mapping)
+            throws ZipException {
+        final int end = findEnd(file, mapping);
+        final int count = mapping.getShort(end + 10) & 0xffff;
+        final long directorySize = mapping.getInt(end + 12) & 0xffffffffL;
+        final long directoryOffset = mapping.getInt(end + 16) & 0xffffffffL;
+        if (count == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL) {
+            throw new ZipException("ZIP64 is not supported: " + file);
+        }
+        final Map<String, Entry> ret = new LinkedHashMap<>(count * 2);
+        int position = (int) directoryOffset;
+        for (int i = 0; i < count; ++i) {
+            if (mapping.getInt(position) != CENTRAL_HEADER) {
+                throw new ZipException("invalid central directory of " + file);
+            }
+            final int method = mapping.getShort(position + 10) & 0xffff;
+            final int compressedSize = mapping.getInt(position + 20);
+            final int size = mapping.getInt(position + 24);
+            final int nameLength = mapping.getShort(position + 28) & 0xffff;
+            final int extraLength = mapping.getShort(position + 30) & 0xffff;
+            final int commentLength = mapping.getShort(position + 32) & 0xffff;
+            final int offset = mapping.getInt(position + 42);
+            final byte[] name = new byte[nameLength];
+            final ByteBuffer nameBuffer = mapping.duplicate();
+            nameBuffer.position(position + 46);
+            nameBuffer.get(name);
+            final String entryName = new String(name, StandardCharsets.UTF_8);
+            if (!entryName.endsWith("/")) {
+                ret.put(entryName, new Entry(entryName, method, compressedSize, size, offset));
+            }
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return ret;
+    }
+
+    private static int findEnd(File file, ByteBuffer mapping) throws ZipException {
+        final int min = Math.max(0, mapping.limit() - END_SIZE - 0xffff);
+        for (int i = mapping.limit() - END_SIZE; i >= min; --i) {
+            if (mapping.getInt(i) == END_HEADER) {
+                return i;
+            }
+        }
+        throw new ZipException("cannot find the end of central directory of " + file);
+    }
+
+    private static class Entry {
+        private final String name;
+        private final int method;
+        private final int compressedSize;
+        private final int size;
+        private final int offset;
+
+        private Entry(String name, int method, int compressedSize, int size, int offset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
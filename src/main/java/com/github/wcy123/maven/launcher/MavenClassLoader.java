@@ -2,113 +2,212 @@ package com.github.wcy123.maven.launcher;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipException;
 
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.project.ProjectBuildingRequest;
-import org.apache.maven.shared.artifact.resolve.ArtifactResolver;
-import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
-import org.apache.maven.shared.dependency.graph.DependencyNode;
 
+/**
+ * A class loader per artifact, which sees the classes of its own jar and of the artifacts it
+ * depends on, and nothing else.
+ *
+ * A lookup searches the own jar first, then the dependencies depth first, in the order they are
+ * declared. Each loader of the graph is searched once per lookup, and only if the index of its jar
+ * has the package of the name. The loaders are created and linked by a {@link LoaderGraph}, which
+ * also computes the order each of them searches the graph in, once.
+ */
 public class MavenClassLoader extends URLClassLoader {
-    private final static Map<String, MavenClassLoader> cache = new ConcurrentHashMap<>();
-    private final static Map<String, File> cacheFile = new ConcurrentHashMap<>();
-    private final MavenClassLoader[] collections;
-    private final String key;
-
-    private MavenClassLoader(DependencyNode node,
-            ArtifactResolver artifactResolver,
-            ProjectBuildingRequest buildRequest,
-            MavenClassLoader[] collections) throws IOException, ArtifactResolverException {
-        super(myGuessUrls(node, artifactResolver, buildRequest));
-        this.collections = collections;
-        key = toKey(node);
-    }
-
-    public static MavenClassLoader create(DependencyNode node, ArtifactResolver artifactResolver,
-            ProjectBuildingRequest buildRequest, MavenClassLoader[] collections)
-            throws IOException, ArtifactResolverException {
-        String key = toKey(node);
-        if (cache.containsKey(key)) {
-            return cache.get(key);
-        }
-        final MavenClassLoader value =
-                new MavenClassLoader(node, artifactResolver, buildRequest, collections);
-        cache.put(key, value);
-        return value;
+    static {
+        ClassLoader.registerAsParallelCapable();
     }
 
-    private static String toKey(DependencyNode node) {
-        return toKey(node.getArtifact());
-    }
+    /**
+     * the dependencies, set once when a {@link LoaderGraph} links its loaders.
+     */
+    private MavenClassLoader[] collections;
+    /**
+     * this loader and the loaders it reaches through its dependencies, in the order a lookup
+     * searches them, see {@link #computeVisitOrder}.
+     */
+    private volatile MavenClassLoader[] visitOrder = {this};
+    private final File file;
+    private final JarIndex index;
+    private final LookupCounters counters = new LookupCounters();
+    /**
+     * the classes this jar defined, whichever loader was asked for them.
+     */
+    private final LookupCounters definitions = new LookupCounters();
+    private final ClassSizes sizes;
 
-    private static String toKey(Artifact artifact) {
-        return String.join(":", artifact.getGroupId(), artifact.getArtifactId(),
-                artifact.getVersion());
+    /**
+     * a loader of a {@link LoaderGraph}, whose dependencies are linked later.
+     */
+    MavenClassLoader(File file, File indexDirectory) throws IOException {
+        super(new URL[] {file.toURI().toURL()});
+        this.collections = new MavenClassLoader[0];
+        this.file = file;
+        this.sizes = new ClassSizes(file);
+        index = file.isFile() ? loadIndex(file, indexDirectory) : null;
     }
 
-    private static URL[] myGuessUrls(DependencyNode node, ArtifactResolver artifactResolver,
-            ProjectBuildingRequest buildRequest) throws IOException, ArtifactResolverException {
-        Artifact mavenNode = node.getArtifact();
-        if (!mavenNode.isResolved()) {
-            mavenNode = artifactResolver.resolveArtifact(buildRequest, mavenNode).getArtifact();
+    private static JarIndex loadIndex(File file, File indexDirectory) throws IOException {
+        try {
+            return JarIndex.load(file, indexDirectory);
+        } catch (ZipException e) {
+            // e.g. a dependency of type pom, which the graph still needs for its edges.
+            return null;
         }
-        final File file = mavenNode.getFile();
-        cacheFile.put(toKey(node), file);
-        return new URL[] {file.toURI().toURL()};
     }
 
-    public void print(PrintStream out, int indentLevel) {
-        out.println(indent(indentLevel) + id());
-        for (MavenClassLoader mavenNode : collections) {
-            mavenNode.print(out, indentLevel + 1);
+    static String toKey(Artifact artifact) {
+        final String classifier = artifact.getClassifier();
+        if (classifier == null || classifier.isEmpty()) {
+            return String.join(":", artifact.getGroupId(), artifact.getArtifactId(),
+                    artifact.getVersion());
         }
+        // e.g. the native jars of netty, next to the plain one.
+        return String.join(":", artifact.getGroupId(), artifact.getArtifactId(), classifier,
+                artifact.getVersion());
+    }
+
+    void setDependencies(MavenClassLoader[] dependencies) {
+        this.collections = dependencies;
     }
 
-    public String id() {
-        return getFileName() + "@" + this;
+    /**
+     * Computes the order lookups search the graph in, once all the loaders of the graph are
+     * linked: this loader, then the dependencies depth first, in the order they are declared,
+     * each loader once.
+     */
+    void computeVisitOrder() {
+        final Set<MavenClassLoader> visited =
+                Collections.newSetFromMap(new IdentityHashMap<MavenClassLoader, Boolean>());
+        final List<MavenClassLoader> order = new ArrayList<>();
+        addVisitOrder(visited, order);
+        visitOrder = order.toArray(new MavenClassLoader[order.size()]);
     }
 
-    private String indent(int indent) {
-        final char[] chars = new char[indent * 4];
-        for (int i = 0; i < chars.length; ++i) {
-            chars[i] = ' ';
+    private void addVisitOrder(Set<MavenClassLoader> visited, List<MavenClassLoader> order) {
+        if (!visited.add(this)) {
+            return;
+        }
+        order.add(this);
+        for (MavenClassLoader dependency : collections) {
+            dependency.addVisitOrder(visited, order);
         }
-        return new String(chars);
     }
 
     public File getFile() {
-        return cacheFile.get(key);
+        return file;
     }
 
+    /**
+     * @return the class defined by this jar or by the first of its dependencies which has it.
+     */
     @Override
     public Class<?> findClass(String name) throws ClassNotFoundException {
-        for (MavenClassLoader cl : collections) {
-            return cl.superFindClass(name);
+        counters.lookup();
+        final long start = System.nanoTime();
+        try {
+            for (MavenClassLoader loader : visitOrder) {
+                if (loader.mayContain(name)) {
+                    counters.probe();
+                    try {
+                        return loader.superFindClass(name, counters);
+                    } catch (ClassNotFoundException ex) {
+                        // another class of the package, the package may be split across jars.
+                    }
+                }
+            }
+            counters.miss();
+            throw new ClassNotFoundException(name);
+        } finally {
+            counters.findClass(System.nanoTime() - start);
         }
-        throw new ClassNotFoundException(name);
     }
 
-    private Class<?> superFindClass(String name) throws ClassNotFoundException {
-        try {
+    @Override
+    public URL findResource(String name) {
+        for (MavenClassLoader loader : visitOrder) {
+            if (loader.mayContainResource(name)) {
+                final URL url = loader.superFindResource(name);
+                if (url != null) {
+                    return url;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) {
+        final List<URL> ret = new ArrayList<>();
+        for (MavenClassLoader loader : visitOrder) {
+            if (loader.mayContainResource(name)) {
+                final URL url = loader.superFindResource(name);
+                if (url != null) {
+                    ret.add(url);
+                }
+            }
+        }
+        return Collections.enumeration(ret);
+    }
+
+    private URL superFindResource(String name) {
+        return super.findResource(name);
+    }
+
+    private Class<?> superFindClass(String name, LookupCounters requester)
+            throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            final Class<?> loaded = findLoadedClass(name);
+            if (loaded != null) {
+                return loaded;
+            }
+            final long start = System.nanoTime();
             final Class<?> aClass = super.findClass(name);
-            System.out.println("loaded class " + name + " by " + getFileName()
-                    + "@" + this);
-            System.out.println("classLoader is " + aClass.getClassLoader());
+            final long bytes = sizes.of(name);
+            definitions.classDefined(bytes);
+            definitions.findClass(System.nanoTime() - start);
+            requester.classDefined(bytes);
             return aClass;
-        } catch (ClassNotFoundException ex) {
-            System.out.println("cannot find class " + name + " by " + getFileName()
-                    + "@" + this);
-            // do not matter.
-            throw ex;
         }
     }
 
-    private File getFileName() {
-        return cacheFile.get(this.key);
+    /**
+     * @return the lookups asked to this loader, and the classes they defined in the graph.
+     */
+    public LookupCounters getLookupCounters() {
+        return counters;
+    }
+
+    /**
+     * @return the classes defined from the jar of this loader.
+     */
+    public LookupCounters getDefinitionCounters() {
+        return definitions;
+    }
+
+    /**
+     * @return false if the index of the jar proves that it does not contain the class.
+     */
+    private boolean mayContain(String className) {
+        if (index == null) {
+            return true;
+        }
+        final int i = className.lastIndexOf('.');
+        return index.hasPackage(i < 0 ? "" : className.substring(0, i).replace('.', '/'));
+    }
+
+    private boolean mayContainResource(String name) {
+        return index == null || name.endsWith("/")
+                || index.hasPackage(PackageIndex.packageOf(name));
     }
 }
@@ -0,0 +1,552 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * The members of a fat jar, i.e. an executable jar which nests its dependencies as jars, like the
+ * ones Spring Boot builds:
+ *
+ * <pre>
+ * BOOT-INF/classes/       the classes of the application
+ * BOOT-INF/lib/*.jar      its dependencies, stored uncompressed
+ * BOOT-INF/classpath.idx  the classpath order of the dependencies
+ * </pre>
+ *
+ * The directory of classes and each nested jar become members of a {@link SharedUrlClassLoader}
+ * group, read in place through {@link MappedJarFile} views of the outer file, nothing is
+ * extracted. A member is denoted by a URL like
+ * <code>jar:file:/app.jar!/BOOT-INF/lib/foo.jar!/</code>, as Spring Boot does, whose handler
+ * serves the entries of the view. A nested jar is parsed when its member is first asked for an
+ * entry. Its connections are {@link JarURLConnection}s whose {@link JarFile} lists the entries of
+ * the member, so that a directory of it can be walked as a directory of a jar.
+ *
+ * A member is forgotten when its {@link SharedUrlClassLoader} is closed, and a fat jar when it has
+ * no member left.
+ */
+public class NestedJars {
+    private static final String SEPARATOR = "!/";
+    private static final String CLASSES = "Spring-Boot-Classes";
+    private static final String LIB = "Spring-Boot-Lib";
+    private static final String CLASSPATH_INDEX = "Spring-Boot-Classpath-Index";
+    private static final String START_CLASS = "Start-Class";
+
+    /**
+     * the members by their URL.
+     */
+    private static final Map<String, Member> members = new ConcurrentHashMap<>();
+    /**
+     * the mapping of each fat jar, shared by its members.
+     */
+    private static final Map<String, Outer> outers = new ConcurrentHashMap<>();
+
+    private NestedJars() {
+    }
+
+    /**
+     * @return true if <code>manifest</code> is the manifest of a fat jar.
+     */
+    public static boolean isFatJar(Manifest manifest) {
+        if (manifest == null) {
+            return false;
+        }
+        final Attributes attributes = manifest.getMainAttributes();
+        return attributes.getValue(CLASSES) != null || attributes.getValue(LIB) != null;
+    }
+
+    /**
+     * @return the class whose <code>main</code> the launcher of a fat jar runs, the
+     *         <code>Main-Class</code> of a fat jar is the launcher itself.
+     */
+    public static String getStartClass(Manifest manifest) {
+        return manifest.getMainAttributes().getValue(START_CLASS);
+    }
+
+    /**
+     * @param jar a fat jar, see {@link #isFatJar}
+     * @param manifest the manifest of <code>jar</code>
+     * @return the members <code>jar</code> is launched from, in classpath order: its classes,
+     *         then its nested jars.
+     */
+    public static List<URL> getMembers(File jar, Manifest manifest) throws IOException {
+        final Attributes attributes = manifest.getMainAttributes();
+        final MappedJarFile outer = getOuter(jar).jar;
+        final String prefix = "jar:" + jar.toURI().toURL() + SEPARATOR;
+        final List<URL> ret = new ArrayList<>();
+        final String classes = attributes.getValue(CLASSES);
+        if (classes != null) {
+            ret.add(toURL(prefix + trimSlash(classes) + SEPARATOR));
+        }
+        final String lib = attributes.getValue(LIB);
+        if (lib != null) {
+            for (String name : getLibraries(outer, trimSlash(lib) + "/",
+                    attributes.getValue(CLASSPATH_INDEX))) {
+                ret.add(toURL(prefix + name + SEPARATOR));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the nested jars in <code>lib</code>, in the order of the classpath index if there
+     *         is one, otherwise in the order of the jar.
+     */
+    private static List<String> getLibraries(MappedJarFile outer, String lib, String index)
+            throws IOException {
+        final List<String> ret = new ArrayList<>();
+        final ByteBuffer bytes = index == null ? null : outer.getBytes(index);
+        if (bytes != null) {
+            final byte[] array = new byte[bytes.remaining()];
+            bytes.get(array);
+            // lines like - "BOOT-INF/lib/foo.jar", older versions leave the directory out.
+            for (String line : new String(array, StandardCharsets.UTF_8).split("\n")) {
+                final int begin = line.indexOf('"');
+                final int end = line.lastIndexOf('"');
+                if (begin >= 0 && end > begin) {
+                    final String name = line.substring(begin + 1, end);
+                    ret.add(name.startsWith(lib) ? name : lib + name);
+                }
+            }
+            return ret;
+        }
+        for (String name : outer.getEntryNames()) {
+            if (name.startsWith(lib) && name.endsWith(".jar")
+                    && name.indexOf('/', lib.length()) < 0) {
+                ret.add(name);
+            }
+        }
+        return ret;
+    }
+
+    private static String trimSlash(String name) {
+        return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+    }
+
+    /**
+     * @param spec the string form of a URL, e.g. as a member URL is sent to the daemon
+     * @return the URL, with the handler of its member if it denotes a member of a fat jar.
+     */
+    public static URL toURL(String spec) throws IOException {
+        final Member member = members.get(spec);
+        if (member != null && member.isCurrent()) {
+            return member.url;
+        }
+        final int end = spec.indexOf(SEPARATOR);
+        if (!spec.startsWith("jar:") || end < 0 || !spec.endsWith(SEPARATOR)
+                || end + SEPARATOR.length() >= spec.length() - SEPARATOR.length()) {
+            return new URL(spec);
+        }
+        final File jar = PackageIndex.toFile(new URL(spec.substring("jar:".length(), end)));
+        if (jar == null) {
+            return new URL(spec);
+        }
+        final String name =
+                spec.substring(end + SEPARATOR.length(), spec.length() - SEPARATOR.length());
+        final Member ret = new Member(getOuter(jar), name, spec);
+        members.put(spec, ret);
+        return ret.url;
+    }
+
+    private static Outer getOuter(File jar) throws IOException {
+        final String key = jar.getAbsolutePath();
+        final Outer outer = outers.get(key);
+        if (outer != null && outer.isCurrent()) {
+            return outer;
+        }
+        final Outer ret = new Outer(jar);
+        outers.put(key, ret);
+        return ret;
+    }
+
+    /**
+     * Forgets the member <code>url</code> denotes, unless it was replaced by a member of a newer
+     * version of its fat jar, and the fat jar if no other member is left.
+     *
+     * @param url the URL {@link #toURL} returned for the member
+     */
+    static void release(URL url) {
+        final Member member = url == null ? null : members.get(url.toString());
+        if (member == null || member.url != url || !members.remove(url.toString(), member)) {
+            return;
+        }
+        member.close();
+        for (Member other : members.values()) {
+            if (other.outer == member.outer) {
+                return;
+            }
+        }
+        outers.remove(member.outer.file.getAbsolutePath(), member.outer);
+    }
+
+    /**
+     * @return true if <code>url</code> denotes a member of a fat jar.
+     */
+    static boolean isNested(URL url) {
+        return url != null && members.containsKey(url.toString());
+    }
+
+    /**
+     * @return the view of the member <code>url</code> denotes, or <code>null</code> if it is not
+     *         a member of a fat jar.
+     */
+    static MappedJarFile open(URL url) throws IOException {
+        final Member member = members.get(url.toString());
+        return member == null ? null : member.open();
+    }
+
+    /**
+     * @return the fat jar of the member <code>url</code> denotes, or <code>null</code>. a member
+     *         changes with its fat jar only.
+     */
+    static File getFile(URL url) {
+        final Member member = members.get(url.toString());
+        return member == null ? null : member.outer.file;
+    }
+
+    /**
+     * @return the URL of the entry <code>name</code> of the member <code>url</code> denotes, or
+     *         <code>null</code> if it has no such entry.
+     */
+    static URL getResource(URL url, String name) throws IOException {
+        final Member member = members.get(url.toString());
+        if (member == null) {
+            return null;
+        }
+        if (!hasEntry(member.open(), name)) {
+            return null;
+        }
+        return new URL(url.getProtocol(), null, -1, url.getFile() + name, member.handler);
+    }
+
+    /**
+     * @return true if <code>jar</code> has the entry <code>name</code>, or the directory
+     *         <code>name</code> if it ends with a slash, whose entries the jar does not list.
+     */
+    private static boolean hasEntry(MappedJarFile jar, String name) {
+        if (jar.hasEntry(name)) {
+            return true;
+        }
+        if (!name.endsWith("/")) {
+            return false;
+        }
+        for (String entry : jar.getEntryNames()) {
+            if (entry.startsWith(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the mapping of a fat jar, replaced when the file changes.
+     */
+    private static class Outer {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final MappedJarFile jar;
+
+        private Outer(File file) throws IOException {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.jar = MappedJarFile.open(file);
+        }
+
+        private boolean isCurrent() {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * A directory or a nested jar of a fat jar.
+     */
+    private static class Member {
+        private final Outer outer;
+        /**
+         * the entry name of a nested jar, or the name of a directory without the trailing slash.
+         */
+        private final String name;
+        private final URL url;
+        private final Handler handler = new Handler(this);
+        private volatile MappedJarFile jar;
+        private MemberJarFile jarFile;
+
+        private Member(Outer outer, String name, String spec) throws MalformedURLException {
+            this.outer = outer;
+            this.name = name;
+            this.url = new URL(null, spec, handler);
+        }
+
+        private boolean isCurrent() {
+            return outer.isCurrent();
+        }
+
+        private MappedJarFile open() throws IOException {
+            MappedJarFile ret = jar;
+            if (ret == null) {
+                ret = name.endsWith(".jar") ? outer.jar.nested(name)
+                        : outer.jar.directory(name + "/");
+                jar = ret;
+            }
+            return ret;
+        }
+
+        /**
+         * @return the entries of the member as a {@link JarFile}, shared by its connections as
+         *         the JDK shares the files of cached jar connections.
+         */
+        private synchronized JarFile getJarFile() throws IOException {
+            if (jarFile == null) {
+                jarFile = new MemberJarFile(outer.file, open());
+            }
+            return jarFile;
+        }
+
+        private synchronized void close() {
+            if (jarFile == null) {
+                return;
+            }
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                // nothing was read through the outer file.
+            }
+            jarFile = null;
+        }
+    }
+
+    /**
+     * The entries of a member. The file is opened on the fat jar, which is a valid zip file, but
+     * every entry is read from the view of the member.
+     */
+    private static class MemberJarFile extends JarFile {
+        private final MappedJarFile jar;
+
+        private MemberJarFile(File file, MappedJarFile jar) throws IOException {
+            super(file, false);
+            this.jar = jar;
+        }
+
+        @Override
+        public Enumeration<JarEntry> entries() {
+            final Iterator<String> names = jar.getEntryNames().iterator();
+            return new Enumeration<JarEntry>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return names.hasNext();
+                }
+
+                @Override
+                public JarEntry nextElement() {
+                    return new JarEntry(names.next());
+                }
+            };
+        }
+
+        @Override
+        public Stream<JarEntry> stream() {
+            return Collections.list(entries()).stream();
+        }
+
+        @Override
+        public ZipEntry getEntry(String name) {
+            return getJarEntry(name);
+        }
+
+        @Override
+        public JarEntry getJarEntry(String name) {
+            return hasEntry(jar, name) ? new JarEntry(name) : null;
+        }
+
+        @Override
+        public InputStream getInputStream(ZipEntry entry) throws IOException {
+            if (!hasEntry(jar, entry.getName())) {
+                return null;
+            }
+            final ByteBuffer bytes = jar.getBytes(entry.getName());
+            // a directory has no content.
+            return new BufferInputStream(bytes == null ? ByteBuffer.allocate(0) : bytes);
+        }
+
+        @Override
+        public Manifest getManifest() throws IOException {
+            return jar.getManifest();
+        }
+
+        @Override
+        public int size() {
+            return jar.getEntryNames().size();
+        }
+    }
+
+    /**
+     * Serves the entries of a member, the entry of a URL is the part after its last
+     * <code>!/</code>.
+     */
+    private static class Handler extends URLStreamHandler {
+        private final Member member;
+
+        private Handler(Member member) {
+            this.member = member;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            final String file = url.getFile();
+            return new Connection(url, member,
+                    file.substring(file.lastIndexOf(SEPARATOR) + SEPARATOR.length()));
+        }
+    }
+
+    /**
+     * A connection to an entry of a member. The jar file of the connection is the member, not the
+     * fat jar, whose URL {@link JarURLConnection} would take from before the first
+     * <code>!/</code>.
+     */
+    private static class Connection extends JarURLConnection {
+        private final Member member;
+        private final String name;
+        private ByteBuffer bytes;
+
+        private Connection(URL url, Member member, String name) throws MalformedURLException {
+            super(url);
+            this.member = member;
+            this.name = name;
+        }
+
+        /**
+         * @return the entry of the fat jar the member is, e.g.
+         *         <code>jar:file:/app.jar!/BOOT-INF/lib/foo.jar</code>.
+         */
+        @Override
+        public URL getJarFileURL() {
+            final String spec = member.url.toString();
+            try {
+                return new URL(spec.substring(0, spec.length() - SEPARATOR.length()));
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public String getEntryName() {
+            return name.isEmpty() ? null : name;
+        }
+
+        @Override
+        public JarFile getJarFile() throws IOException {
+            connect();
+            return member.getJarFile();
+        }
+
+        @Override
+        public JarEntry getJarEntry() throws IOException {
+            final JarFile jarFile = getJarFile();
+            if (name.isEmpty()) {
+                return null;
+            }
+            final JarEntry ret = jarFile.getJarEntry(name);
+            if (ret == null) {
+                throw new FileNotFoundException(url.toString());
+            }
+            return ret;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (connected) {
+                return;
+            }
+            final ByteBuffer data = member.open().getBytes(name);
+            if (data == null && !name.isEmpty() && !name.endsWith("/")) {
+                throw new FileNotFoundException(url.toString());
+            }
+            // a directory has no content.
+            bytes = data == null ? ByteBuffer.allocate(0) : data;
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return new BufferInputStream(bytes.duplicate());
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+                return bytes.remaining();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int getContentLength() {
+            final long ret = getContentLengthLong();
+            return ret > Integer.MAX_VALUE ? -1 : (int) ret;
+        }
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Maps a package, i.e. the directory part of an entry name, to the members of a
+ * {@link SharedUrlClassLoader} group which contain at least one entry in it.
+ *
+ * The index is built once when the group is created, so that a lookup only asks the jars which
+ * own the package instead of probing every member of the group. Once built, a bloom filter over
+ * all entry names and a cache of failed lookups reject names which no member has, without
+ * touching any jar.
+ *
+ * The index of a group of jars is kept in the index directory too, so that a later group of the
+ * same jars restores it from one file, without loading the {@link JarIndex} of every jar. The jars
+ * themselves are opened by their loaders when a lookup is first routed to them.
+ */
+class PackageIndex {
+    private static final int MAGIC = 0x47494458; // GIDX
+    private static final int VERSION = 2;
+    /**
+     * the versioned entries of multi-release jars the index has depend on the JVM.
+     */
+    private static final int FEATURE_VERSION = Utils.featureVersion();
+    private static final int MAX_MISSES = 16 * 1024;
+    private static final String META_INF = "META-INF/";
+
+    private final Map<String, List<SharedUrlClassLoader>> packages = new HashMap<>();
+    /**
+     * a package and all its parents, for lookups of directories, e.g. <code>com/</code>.
+     */
+    private final Map<String, List<SharedUrlClassLoader>> directories = new HashMap<>();
+    /**
+     * the owners of each entry under <code>META-INF/</code>, which nearly every jar has, so that
+     * e.g. a lookup of a service file asks only the jars which contain it.
+     */
+    private final Map<String, List<SharedUrlClassLoader>> metaInfEntries = new HashMap<>();
+    /**
+     * members whose content cannot be listed, e.g. non-file URLs. they are always probed.
+     */
+    private final List<SharedUrlClassLoader> unindexed = new ArrayList<>();
+
+    private final File indexDirectory;
+    private final LookupCounters counters = new LookupCounters();
+    /**
+     * names which were probed and found nowhere, cleared when it grows too big.
+     */
+    private final Set<String> misses =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * false not to record the classes found through the group, e.g. when no profile is kept.
+     */
+    private final boolean recording;
+    /**
+     * the classes found through the group and the member which had each of them first.
+     */
+    private final Map<String, SharedUrlClassLoader> found = new ConcurrentHashMap<>();
+    /**
+     * the keys of {@link #found}, in the order they were first found.
+     */
+    private final Queue<String> foundOrder = new ConcurrentLinkedQueue<>();
+    /**
+     * the member which had a class in the recorded profile of the group.
+     */
+    private Map<String, SharedUrlClassLoader> hints = Collections.emptyMap();
+    private int[] entryHashes = new int[1024];
+    private int entryCount;
+    private volatile BloomFilter bloomFilter;
+    private AggregateResources aggregates;
+    private volatile boolean sealed;
+
+    /**
+     * @param indexDirectory where {@link JarIndex} files are cached, <code>null</code> to scan
+     *        every jar.
+     * @param recording record the classes found through the group, see
+     *        {@link #getFoundClasses}
+     */
+    PackageIndex(File indexDirectory, boolean recording) {
+        this.indexDirectory = indexDirectory;
+        this.recording = recording;
+    }
+
+    void add(SharedUrlClassLoader loader, URL url) throws IOException {
+        final MappedJarFile nested = NestedJars.open(url);
+        if (nested != null) {
+            addJar(loader, nested.getEntryNames());
+            return;
+        }
+        final File file = toFile(url);
+        if (file == null) {
+            unindexed.add(loader);
+        } else if (file.isDirectory()) {
+            addDirectory(loader, file, "");
+        } else if (file.isFile()) {
+            final JarIndex jarIndex = JarIndex.load(file, indexDirectory);
+            for (String packageName : jarIndex.getPackages()) {
+                addPackage(loader, packageName);
+            }
+            for (String entry : jarIndex.getEntries()) {
+                addEntry(loader, entry);
+            }
+            // the entries a multi-release jar replaces for this JVM are found under their base
+            // names, URLClassLoader and MappedJarFile read the versioned content.
+            for (String entry : jarIndex.getVersionedEntries(FEATURE_VERSION)) {
+                addPackage(loader, packageOf(entry));
+                addEntry(loader, entry);
+            }
+        }
+        // a missing file contributes nothing, URLClassLoader would not find anything either.
+    }
+
+    /**
+     * Restores the index of <code>members</code> which {@link #store} kept for the same jars,
+     * instead of adding each member.
+     *
+     * @param files the jar of each member
+     * @return false if no index is kept or a jar changed since, the members must be added.
+     */
+    boolean load(List<SharedUrlClassLoader> members, List<File> files) {
+        if (indexDirectory == null) {
+            return false;
+        }
+        final File file = getFile(files);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!Utils.readHeader(in, files, MAGIC, VERSION, FEATURE_VERSION)) {
+                return false;
+            }
+            final Map<String, List<SharedUrlClassLoader>> packages = readOwners(in, members);
+            final Map<String, List<SharedUrlClassLoader>> directories = readOwners(in, members);
+            final Map<String, List<SharedUrlClassLoader>> metaInfEntries =
+                    readOwners(in, members);
+            final long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; ++i) {
+                bits[i] = in.readLong();
+            }
+            final BloomFilter filter = new BloomFilter(bits);
+            this.packages.putAll(packages);
+            this.directories.putAll(directories);
+            this.metaInfEntries.putAll(metaInfEntries);
+            this.bloomFilter = filter;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // e.g. a truncated file, the members are added again.
+            return false;
+        }
+    }
+
+    private static Map<String, List<SharedUrlClassLoader>> readOwners(DataInputStream in,
+            List<SharedUrlClassLoader> members) throws IOException {
+        final int size = in.readInt();
+        final Map<String, List<SharedUrlClassLoader>> ret = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; ++i) {
+            final String name = in.readUTF();
+            final int count = in.readInt();
+            final List<SharedUrlClassLoader> owners = new ArrayList<>(count);
+            for (int j = 0; j < count; ++j) {
+                owners.add(members.get(in.readInt()));
+            }
+            ret.put(name, owners);
+        }
+        return ret;
+    }
+
+    /**
+     * Keeps the sealed index of <code>members</code> for the next group of the same jars.
+     *
+     * @param files the jar of each member
+     */
+    void store(List<SharedUrlClassLoader> members, final List<File> files) {
+        final BloomFilter filter = bloomFilter;
+        if (indexDirectory == null || filter == null || !unindexed.isEmpty()) {
+            return;
+        }
+        for (File jar : files) {
+            // the content of a directory may change without its length or time changing.
+            if (!jar.isFile()) {
+                return;
+            }
+        }
+        final Map<SharedUrlClassLoader, Integer> ordinals = new IdentityHashMap<>();
+        for (int i = 0; i < members.size(); ++i) {
+            ordinals.put(members.get(i), i);
+        }
+        Utils.writeCache(getFile(files), new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream stream) throws IOException {
+                final DataOutputStream out = new DataOutputStream(stream);
+                Utils.writeHeader(out, files, MAGIC, VERSION, FEATURE_VERSION);
+                writeOwners(out, packages, ordinals);
+                writeOwners(out, directories, ordinals);
+                writeOwners(out, metaInfEntries, ordinals);
+                final long[] bits = filter.getBits();
+                out.writeInt(bits.length);
+                for (long word : bits) {
+                    out.writeLong(word);
+                }
+                out.flush();
+            }
+        });
+    }
+
+    private static void writeOwners(DataOutputStream out,
+            Map<String, List<SharedUrlClassLoader>> map,
+            Map<SharedUrlClassLoader, Integer> ordinals) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, List<SharedUrlClassLoader>> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (SharedUrlClassLoader owner : entry.getValue()) {
+                out.writeInt(ordinals.get(owner));
+            }
+        }
+    }
+
+    private File getFile(List<File> files) {
+        return new File(indexDirectory, ResolutionCache.toKey(files) + ".gidx");
+    }
+
+    /**
+     * @param aggregates the aggregate resources of all the members, which answer their lookups
+     *        instead of the jars. must be set before {@link #seal()}.
+     */
+    void setAggregates(AggregateResources aggregates) {
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * @param hints the member which had each class when the profile of the group was recorded,
+     *        asked first for it. must be set before {@link #seal()}.
+     */
+    void setHints(Map<String, SharedUrlClassLoader> hints) {
+        this.hints = hints;
+    }
+
+    /**
+     * Builds the bloom filter, no member may be added afterwards.
+     */
+    void seal() {
+        if (unindexed.isEmpty() && bloomFilter == null) {
+            bloomFilter = new BloomFilter(entryHashes, entryCount);
+        }
+        entryHashes = null;
+        sealed = true;
+    }
+
+    /**
+     * @return true once {@link #seal()} was called, the index may be read by any thread.
+     */
+    boolean isSealed() {
+        return sealed;
+    }
+
+    LookupCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * @return the resources named <code>name</code> in classpath order, or <code>null</code> if
+     *         the members must be asked.
+     */
+    List<URL> aggregated(String name) {
+        final AggregateResources aggregates = this.aggregates;
+        if (aggregates == null) {
+            return null;
+        }
+        final List<URL> ret = aggregates.get(name);
+        if (ret != null) {
+            counters.lookup();
+        }
+        return ret;
+    }
+
+    /**
+     * @param name a resource name, e.g. <code>java/lang/Object.class</code>
+     * @return false if no member can have <code>name</code>. the caller must not probe any jar.
+     */
+    boolean mayContain(String name) {
+        counters.lookup();
+        if (name.endsWith("/") || directories.containsKey(name)) {
+            // directories are not entries of the bloom filter.
+            return true;
+        }
+        final BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(name)) {
+            counters.bloomRejection();
+            return false;
+        }
+        if (misses.contains(name)) {
+            counters.negativeHit();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that <code>name</code> was probed and found in no member.
+     */
+    void miss(String name) {
+        counters.miss();
+        if (misses.size() >= MAX_MISSES) {
+            misses.clear();
+        }
+        misses.add(name);
+    }
+
+    void probe() {
+        counters.probe();
+    }
+
+    /**
+     * @return the member which had <code>className</code> when the profile was recorded, or
+     *         <code>null</code>.
+     */
+    SharedUrlClassLoader hint(String className) {
+        return hints.get(className);
+    }
+
+    /**
+     * Records that <code>member</code> had <code>className</code>, once per class, so that a
+     * class which is looked up again and again does not grow the record.
+     */
+    void found(String className, SharedUrlClassLoader member) {
+        if (recording && found.putIfAbsent(className, member) == null) {
+            foundOrder.add(className);
+        }
+    }
+
+    /**
+     * @return the classes found through the group and the members which had them, in the order
+     *         they were first found. empty if the group does not record them.
+     */
+    Map<String, SharedUrlClassLoader> getFoundClasses() {
+        final Map<String, SharedUrlClassLoader> ret = new LinkedHashMap<>();
+        for (String className : foundOrder) {
+            ret.put(className, found.get(className));
+        }
+        return ret;
+    }
+
+    List<SharedUrlClassLoader> forClass(String className) {
+        final int index = className.lastIndexOf('.');
+        return forPackage(index < 0 ? "" : className.substring(0, index).replace('.', '/'));
+    }
+
+    List<SharedUrlClassLoader> forResource(String name) {
+        if (name.endsWith("/")) {
+            return withUnindexed(directories.get(name.substring(0, name.length() - 1)));
+        }
+        final List<SharedUrlClassLoader> owners = name.startsWith(META_INF)
+                ? metaInfEntries.get(name) : packages.get(packageOf(name));
+        final List<SharedUrlClassLoader> directoryOwners = directories.get(name);
+        if (directoryOwners == null) {
+            return withUnindexed(owners);
+        }
+        // a name like com/foo may denote the directory as well as an entry.
+        final List<SharedUrlClassLoader> ret = new ArrayList<>(directoryOwners);
+        if (owners != null) {
+            for (SharedUrlClassLoader owner : owners) {
+                if (!ret.contains(owner)) {
+                    ret.add(owner);
+                }
+            }
+        }
+        return withUnindexed(ret);
+    }
+
+    private List<SharedUrlClassLoader> forPackage(String packageName) {
+        return withUnindexed(packages.get(packageName));
+    }
+
+    private List<SharedUrlClassLoader> withUnindexed(List<SharedUrlClassLoader> owners) {
+        if (unindexed.isEmpty()) {
+            return owners == null ? Collections.<SharedUrlClassLoader>emptyList() : owners;
+        }
+        final List<SharedUrlClassLoader> ret = new ArrayList<>();
+        if (owners != null) {
+            ret.addAll(owners);
+        }
+        ret.addAll(unindexed);
+        return ret;
+    }
+
+    private void addDirectory(SharedUrlClassLoader loader, File dir, String packageName) {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        boolean hasFile = false;
+        for (File file : files) {
+            final String name =
+                    packageName.isEmpty() ? file.getName() : packageName + "/" + file.getName();
+            if (file.isDirectory()) {
+                addDirectory(loader, file, name);
+            } else {
+                hasFile = true;
+                addEntry(loader, name);
+            }
+        }
+        if (hasFile) {
+            addPackage(loader, packageName);
+        }
+    }
+
+    /**
+     * adds the entries of a jar which has no {@link JarIndex}, e.g. a nested one.
+     */
+    private void addJar(SharedUrlClassLoader loader, Collection<String> entries) {
+        final Set<String> packageNames = new LinkedHashSet<>();
+        for (String entry : entries) {
+            packageNames.add(packageOf(entry));
+            addEntry(loader, entry);
+        }
+        for (String packageName : packageNames) {
+            addPackage(loader, packageName);
+        }
+    }
+
+    private void addPackage(SharedUrlClassLoader loader, String packageName) {
+        addOwner(packages, packageName, loader);
+        for (String dir = packageName; !dir.isEmpty(); dir = packageOf(dir)) {
+            addOwner(directories, dir, loader);
+        }
+    }
+
+    private static void addOwner(Map<String, List<SharedUrlClassLoader>> map, String key,
+            SharedUrlClassLoader loader) {
+        List<SharedUrlClassLoader> owners = map.get(key);
+        if (owners == null) {
+            owners = new ArrayList<>(1);
+            map.put(key, owners);
+        }
+        // a member is scanned completely before the next one, checking the last owner is enough.
+        if (owners.isEmpty() || owners.get(owners.size() - 1) != loader) {
+            owners.add(loader);
+        }
+    }
+
+    private void addEntry(SharedUrlClassLoader loader, String name) {
+        if (name.startsWith(META_INF)) {
+            addOwner(metaInfEntries, name, loader);
+        }
+        if (entryCount == entryHashes.length) {
+            entryHashes = Arrays.copyOf(entryHashes, entryCount * 2);
+        }
+        entryHashes[entryCount++] = name.hashCode();
+    }
+
+    static String packageOf(String entryName) {
+        final int index = entryName.lastIndexOf('/');
+        return index < 0 ? "" : entryName.substring(0, index);
+    }
+
+    static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return new File(url.getFile());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.wcy123.maven.launcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolver;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
+import org.apache.maven.shared.dependencies.DependableCoordinate;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+import org.eclipse.aether.util.graph.visitor.PreorderNodeListGenerator;
+
+/**
+ * Resolves a dependency closure in two stages: the dependency graph is collected first, without
+ * downloading anything, then the artifacts of the graph are resolved, and downloaded if needed, by
+ * a pool of threads. The resulting list keeps the classpath order of the graph whatever the order
+ * in which the downloads complete.
+ */
+public class ParallelArtifactResolver {
+    private final RepositorySystem repositorySystem;
+    private final ArtifactResolver artifactResolver;
+    private final int threads;
+
+    public ParallelArtifactResolver(RepositorySystem repositorySystem,
+            ArtifactResolver artifactResolver, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.repositorySystem = repositorySystem;
+        this.artifactResolver = artifactResolver;
+        this.threads = threads;
+    }
+
+    /**
+     * @return the unresolved artifacts of the closure of <code>coordinate</code>, in classpath
+     *         order, the artifact of <code>coordinate</code> first.
+     */
+    public List<Artifact> collect(ProjectBuildingRequest buildingRequest,
+            DependableCoordinate coordinate) throws DependencyCollectionException {
+        return toArtifacts(collectClosure(buildingRequest, coordinate));
+    }
+
+    /**
+     * @return the root of the dependency graph of <code>coordinate</code>, whose version conflicts
+     *         are resolved. nothing is resolved yet.
+     */
+    public DependencyNode collectClosure(ProjectBuildingRequest buildingRequest,
+            DependableCoordinate coordinate) throws DependencyCollectionException {
+        return collect(buildingRequest.getRepositorySession(), buildingRequest, coordinate);
+    }
+
+    /**
+     * @param root a graph returned by {@link #collectClosure}
+     * @return the unresolved artifacts of the graph, in classpath order.
+     */
+    public static List<Artifact> toArtifacts(DependencyNode root) {
+        final PreorderNodeListGenerator nodes = new PreorderNodeListGenerator();
+        root.accept(nodes);
+        final List<Artifact> ret = new ArrayList<>();
+        for (DependencyNode node : nodes.getNodes()) {
+            if (node.getDependency() != null) {
+                final Artifact artifact = RepositoryUtils.toArtifact(node.getArtifact());
+                artifact.setScope(node.getDependency().getScope());
+                ret.add(artifact);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Collects the dependency graph of <code>coordinate</code> with the nodes which lost a
+     * version conflict, or duplicate a node, kept as leaves. Such a node points to the node which
+     * won by {@link ConflictResolver#NODE_DATA_WINNER}, so that every declared edge of the graph
+     * is known.
+     *
+     * @return the root of the graph, nothing is resolved yet.
+     */
+    public DependencyNode collectGraph(ProjectBuildingRequest buildingRequest,
+            DependableCoordinate coordinate) throws DependencyCollectionException {
+        final DefaultRepositorySystemSession session =
+                new DefaultRepositorySystemSession(buildingRequest.getRepositorySession());
+        session.setConfigProperty(ConflictResolver.CONFIG_PROP_VERBOSE, Boolean.TRUE);
+        return collect(session, buildingRequest, coordinate);
+    }
+
+    private DependencyNode collect(RepositorySystemSession session,
+            ProjectBuildingRequest buildingRequest, DependableCoordinate coordinate)
+            throws DependencyCollectionException {
+        final CollectRequest request = new CollectRequest();
+        request.setRoot(new Dependency(new DefaultArtifact(coordinate.getGroupId(),
+                coordinate.getArtifactId(), coordinate.getClassifier(), coordinate.getType(),
+                coordinate.getVersion()), null));
+        request.setRepositories(RepositoryUtils.toRepos(buildingRequest.getRemoteRepositories()));
+        return repositorySystem.collectDependencies(session, request).getRoot();
+    }
+
+    /**
+     * Resolves <code>artifacts</code> concurrently.
+     *
+     * @return the resolved artifacts, in the order of <code>artifacts</code>.
+     * @throws ArtifactResolverException the failure of the first artifact, in classpath order,
+     *         which cannot be resolved. the remaining downloads are cancelled.
+     */
+    public List<Artifact> resolve(final ProjectBuildingRequest buildingRequest,
+            List<Artifact> artifacts) throws ArtifactResolverException {
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(threads, Math.max(1, artifacts.size())),
+                        new ResolverThreadFactory());
+        try {
+            final List<Future<Artifact>> futures = new ArrayList<>(artifacts.size());
+            for (final Artifact artifact : artifacts) {
+                futures.add(executor.submit(new Callable<Artifact>() {
+                    @Override
+                    public Artifact call() throws ArtifactResolverException {
+                        return artifactResolver.resolveArtifact(buildingRequest, artifact)
+                                .getArtifact();
+                    }
+                }));
+            }
+            final List<Artifact> ret = new ArrayList<>(artifacts.size());
+            for (Future<Artifact> future : futures) {
+                ret.add(get(future));
+            }
+            return ret;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Artifact get(Future<Artifact> future) throws ArtifactResolverException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while resolving artifacts", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ArtifactResolverException) {
+                throw (ArtifactResolverException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static class ResolverThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread =
+                    new Thread(runnable, "launcher-resolver-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A child JVM of a {@link ForkPool}, started ahead of a launch with the closure of the launch on
+ * its class path.
+ *
+ * The child loads the Main-Class, and the classes of the profile of the closure if there is one,
+ * without initializing them. Then it listens on a loopback port, which it writes to its port file
+ * together with a random token, as {@link LauncherDaemon} does. The first client which presents
+ * the token sends the arguments. The child acknowledges them, runs <code>main</code> once on its
+ * main thread and streams what the launch writes to {@link System#out} and {@link System#err}
+ * back to the client. When the last non-daemon thread ends, it sends the exit code and exits. A
+ * launch which calls {@link System#exit} sends what it wrote from a shutdown hook, but not its
+ * status, so that it ends without an exit code. Standard input is not forwarded.
+ *
+ * A child which is not claimed within the idle timeout exits. So does a child whose client goes
+ * away.
+ */
+public class PooledChild {
+    static final int PROTOCOL = 2;
+    static final String PORT = ".port";
+    static final String STARTING = ".starting";
+    /**
+     * how long a client which claimed the port file takes to connect at most.
+     */
+    private static final int CLAIM_TIMEOUT_MILLIS = 10000;
+
+    private PooledChild() {
+    }
+
+    /**
+     * @param args the port file, the idle timeout in milliseconds, the Main-Class and the
+     *        directory of the class profiles, empty if the launch is not profiled.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("usage: PooledChild <port file> <idle timeout in ms> <main class>"
+                    + " <profile directory>");
+            System.exit(2);
+        }
+        final File portFile = new File(args[0]);
+        final String mainClass = args[2];
+        final String token = LauncherDaemon.newToken();
+        final File startingFile = new File(args[0].substring(0, args[0].length() - PORT.length())
+                + STARTING);
+        final Socket socket;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            warmUp(mainClass, args[3]);
+            server.setSoTimeout((int) Math.min(Integer.MAX_VALUE,
+                    Math.max(1000, Long.parseLong(args[1]))));
+            LauncherDaemon.writePortFile(portFile, server.getLocalPort(), token);
+            startingFile.delete();
+            socket = accept(server, portFile, token);
+        } finally {
+            startingFile.delete();
+        }
+        if (socket != null) {
+            System.exit(run(socket, mainClass));
+        }
+    }
+
+    /**
+     * Loads the classes the launch is going to load first, so that the class path is opened and
+     * the classes are parsed before it is claimed.
+     */
+    private static void warmUp(String mainClass, String profileDirectory) {
+        final ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+        final List<String> names = new ArrayList<>();
+        names.add(mainClass);
+        if (!profileDirectory.isEmpty()) {
+            final ClassProfile profile =
+                    ClassProfile.load(new File(profileDirectory), getClosure());
+            if (profile != null) {
+                names.addAll(profile.getClassNames());
+            }
+        }
+        for (String name : names) {
+            try {
+                Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // the launch reports it when it loads the class.
+            }
+        }
+    }
+
+    /**
+     * @return the class path of this JVM without the launcher classes, which come last.
+     */
+    private static List<File> getClosure() {
+        final List<File> ret = new ArrayList<>();
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            ret.add(new File(path).getAbsoluteFile());
+        }
+        if (!ret.isEmpty()) {
+            ret.remove(ret.size() - 1);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the connection of the client which claimed this child, or <code>null</code> if no
+     *         client did within the idle timeout.
+     */
+    private static Socket accept(ServerSocket server, File portFile, String token)
+            throws IOException {
+        boolean claimed = false;
+        while (true) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketTimeoutException e) {
+                // a client renames the port file when it claims the child.
+                if (claimed || portFile.delete()) {
+                    return null;
+                }
+                claimed = true;
+                server.setSoTimeout(CLAIM_TIMEOUT_MILLIS);
+                continue;
+            }
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+            try {
+                if (in.readInt() == PROTOCOL && token.equals(in.readUTF())) {
+                    return socket;
+                }
+            } catch (IOException e) {
+                // not a client of the pool.
+            }
+            socket.close();
+        }
+    }
+
+    /**
+     * @return the exit code of the launch.
+     */
+    private static int run(Socket socket, String mainClass) throws IOException {
+        final DataInputStream in = new DataInputStream(socket.getInputStream());
+        final String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; ++i) {
+            args[i] = in.readUTF();
+        }
+        final LauncherDaemon.Sink sink = new LauncherDaemon.Sink(
+                new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+        sink.accept();
+        System.setOut(new PrintStream(new SinkOutputStream(sink, LauncherDaemon.STDOUT), true));
+        System.setErr(new PrintStream(new SinkOutputStream(sink, LauncherDaemon.STDERR), true));
+        flushOnExit();
+        watch(socket.getInputStream());
+        int exitCode = 0;
+        try {
+            final Method main = Class.forName(mainClass).getMethod("main", String[].class);
+            main.invoke(null, new Object[] {args});
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            System.err.println("cannot launch " + mainClass + ": " + e);
+            exitCode = 1;
+        } catch (InvocationTargetException e) {
+            System.err.print("Exception in thread \"main\" ");
+            e.getCause().printStackTrace();
+            exitCode = 1;
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+        try {
+            MainThreads.joinNonDaemonThreads(Collections.<Thread>emptySet(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.flush();
+        System.err.flush();
+        sink.exit(exitCode);
+        return exitCode;
+    }
+
+    /**
+     * Sends what the launch wrote before the child exits, e.g. because the launch called
+     * {@link System#exit}.
+     */
+    private static void flushOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                System.out.flush();
+                System.err.flush();
+            }
+        }, "launcher-pooled-child-exit"));
+    }
+
+    /**
+     * Exits when the client closes the connection, e.g. because the build was interrupted.
+     */
+    private static void watch(final InputStream in) {
+        final Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (in.read() >= 0) {
+                        // the client sends nothing after the arguments.
+                    }
+                } catch (IOException e) {
+                    // the connection is gone as well.
+                }
+                System.exit(1);
+            }
+        }, "launcher-pooled-child-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private static class SinkOutputStream extends OutputStream {
+        private final LauncherDaemon.Sink sink;
+        private final int channel;
+
+        private SinkOutputStream(LauncherDaemon.Sink sink, int channel) {
+            this.sink = sink;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                sink.write(channel, b, off, len);
+            } catch (IOException e) {
+                // the client went away, the watcher ends the launch.
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.shared.dependencies.DependableCoordinate;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.version.VersionConstraint;
+
+/**
+ * A lockfile-like cache of resolved dependency closures.
+ *
+ * For a fixed coordinate, the ordered list of artifact files is stored under a key made of the
+ * coordinate, the remote repositories and the scope, so that a later launch can skip dependency
+ * resolution completely. SNAPSHOT versions, version ranges and the <code>LATEST</code> /
+ * <code>RELEASE</code> meta versions are never cached because their closure may change without the
+ * coordinate changing, whether the root or a transitive dependency asks for them. A cached closure
+ * is discarded as soon as one of its files is gone.
+ */
+public class ResolutionCache {
+    private static final String HEADER = "# my-maven-launcher resolved closure v1";
+
+    private final File directory;
+
+    /**
+     * @param directory where closures are stored
+     */
+    public ResolutionCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return true if the closure of <code>coordinate</code> can be cached.
+     */
+    public static boolean isCacheable(DependableCoordinate coordinate) {
+        return isFixedVersion(coordinate.getVersion());
+    }
+
+    /**
+     * @param root the collected dependency graph of a cacheable coordinate
+     * @return true if every node of the graph asks for a fixed version, see
+     *         {@link #isFixedVersion}, so that the graph is the same as long as the coordinate is.
+     */
+    public static boolean isCacheable(DependencyNode root) {
+        return isFixed(root,
+                Collections.newSetFromMap(new IdentityHashMap<DependencyNode, Boolean>()));
+    }
+
+    private static boolean isFixed(DependencyNode node, Set<DependencyNode> visited) {
+        if (!visited.add(node)) {
+            return true;
+        }
+        final VersionConstraint constraint = node.getVersionConstraint();
+        if (constraint != null && (constraint.getRange() != null
+                || !isFixedVersion(String.valueOf(constraint.getVersion())))) {
+            return false;
+        }
+        for (DependencyNode child : node.getChildren()) {
+            if (!isFixed(child, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if <code>version</code> always denotes the same artifact.
+     */
+    public static boolean isFixedVersion(String version) {
+        if (version == null || version.isEmpty()) {
+            return false;
+        }
+        if (version.endsWith("SNAPSHOT") || "LATEST".equals(version)
+                || "RELEASE".equals(version)) {
+            return false;
+        }
+        // version ranges, e.g. [1.0,2.0) or (,1.0]
+        return version.indexOf('[') < 0 && version.indexOf('(') < 0 && version.indexOf(',') < 0;
+    }
+
+    /**
+     * @return the key of a closure.
+     */
+    public static String toKey(DependableCoordinate coordinate,
+            List<ArtifactRepository> repositories, String scope) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(coordinate.getGroupId()).append(':')
+                .append(coordinate.getArtifactId()).append(':')
+                .append(coordinate.getType()).append(':')
+                .append(coordinate.getClassifier()).append(':')
+                .append(coordinate.getVersion());
+        for (ArtifactRepository repository : repositories) {
+            sb.append('|').append(repository.getId()).append('=').append(repository.getUrl());
+        }
+        sb.append('|').append(scope);
+        return JarIndex.sha1(sb.toString());
+    }
+
+    /**
+     * @return the key of the files of a closure, in classpath order.
+     */
+    public static String toKey(List<File> closure) {
+        final StringBuilder sb = new StringBuilder();
+        for (File file : closure) {
+            sb.append(file.getAbsolutePath()).append('\n');
+        }
+        return JarIndex.sha1(sb.toString());
+    }
+
+    /**
+     * @return the files of the closure in classpath order, or <code>null</code> if the closure is
+     *         not cached or one of its files does not exist any more.
+     */
+    public List<File> load(String key) {
+        final File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        final List<File> ret = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                return null;
+            }
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final File artifactFile = new File(line);
+                if (!artifactFile.isFile()) {
+                    return null;
+                }
+                ret.add(artifactFile);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return ret.isEmpty() ? null : ret;
+    }
+
+    /**
+     * Stores a closure.
+     *
+     * @param key the key returned by {@link #toKey}
+     * @param description written as a comment, for humans only
+     * @param files the files of the closure in classpath order
+     */
+    public void store(String key, final String description, final List<File> files) {
+        Utils.writeCache(getFile(key), new Utils.Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                writer.write(HEADER + "\n");
+                writer.write("# " + description + "\n");
+                for (File artifactFile : files) {
+                    writer.write(artifactFile.getAbsolutePath() + "\n");
+                }
+                writer.flush();
+            }
+        });
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + ".lst");
+    }
+}
@@ -14,6 +14,7 @@ package com.github.wcy123.maven.launcher;
  * the License.
  */
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
@@ -22,37 +23,20 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
-import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
-import org.apache.maven.artifact.repository.MavenArtifactRepository;
-import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.DefaultProjectBuildingRequest;
-import org.apache.maven.project.ProjectBuilder;
 import org.apache.maven.project.ProjectBuildingRequest;
-import org.apache.maven.repository.LocalArtifactRepository;
-import org.apache.maven.shared.artifact.resolve.ArtifactResolver;
 import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
-import org.apache.maven.shared.artifact.resolve.ArtifactResult;
 import org.apache.maven.shared.dependencies.DefaultDependableCoordinate;
-import org.apache.maven.shared.dependencies.resolve.DependencyResolver;
 import org.apache.maven.shared.dependencies.resolve.DependencyResolverException;
-import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
-import org.apache.maven.shared.dependency.graph.DependencyNode;
 import org.apache.maven.shared.utils.StringUtils;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.DependencyNode;
 
 /**
  * Goal which launch a maven project
@@ -63,43 +47,7 @@ import org.apache.maven.shared.utils.StringUtils;
  */
 @Mojo(name = "run", requiresProject = false)
 public class RunnerMojo
-        extends AbstractMojo {
-    private static final Pattern ALT_REPO_SYNTAX_PATTERN = Pattern.compile("(.+)::(.*)::(.+)");
-
-    @Parameter(defaultValue = "${session}", required = true, readonly = true)
-    private MavenSession session;
-
-    /**
-     *
-     */
-    @Component
-    private ArtifactResolver artifactResolver;
-
-    /**
-     *
-     */
-    @Component
-    private DependencyResolver dependencyResolver;
-
-    /**
-     * Map that contains the layouts.
-     */
-    @Component(role = ArtifactRepositoryLayout.class)
-    private Map<String, ArtifactRepositoryLayout> repositoryLayouts;
-
-    /**
-     * The dependency tree builder to use.
-     */
-    @Component(hint = "default")
-    private DependencyGraphBuilder dependencyGraphBuilder;
-
-    /**
-     * The computed dependency tree root node of the Maven project.
-     */
-    private DependencyNode rootNode;
-    @Component
-    private ProjectBuilder projectBuilder;
-
+        extends AbstractLauncherMojo {
     private DefaultDependableCoordinate coordinate = new DefaultDependableCoordinate();
 
     /**
@@ -134,13 +82,6 @@ public class RunnerMojo
     @Parameter(property = "packaging", defaultValue = "jar")
     private String packaging = "jar";
 
-    /**
-     * Repositories in the format id::[layout]::url or just url, separated by comma. ie.
-     * central::default::http://repo1.maven.apache.org/maven2,myrepo::::http://repo.acme.com,http://repo.acme2.com
-     */
-    @Parameter(property = "remoteRepositories")
-    private String remoteRepositories;
-
     /**
      * A string of the form groupId:artifactId:version[:packaging[:classifier]].
      */
@@ -148,25 +89,117 @@ public class RunnerMojo
     private String artifact;
 
     /**
-     *
+     * The class whose <code>main</code> is run, the <code>Main-Class</code> of the manifest of the
+     * artifact by default, or the <code>Start-Class</code> of a fat jar.
      */
-    @Parameter(defaultValue = "${project.remoteArtifactRepositories}", readonly = true,
-            required = true)
-    private List<ArtifactRepository> pomRemoteRepositories;
+    @Parameter(property = "launcher.mainClass")
+    private String mainClass;
 
     /**
-     *
+     * The arguments of <code>main</code>, separated by white space. An argument which has white
+     * space in it is quoted, e.g. <code>--title "two words"</code>.
      */
-    @Parameter
-    private LocalArtifactRepository localArtifactRepository;
+    @Parameter(property = "launcher.args")
+    private String args;
 
     /**
-     * Skip plugin execution completely.
-     *
-     * @since 2.7
+     * Give each artifact of the closure a class loader which sees its own jar and the
+     * dependencies its pom declares only, instead of one flat class path. The launch runs in this
+     * JVM. A fat jar, or an application jar with a manifest <code>Class-Path</code>, has jars the
+     * poms do not declare, and is rejected.
+     */
+    @Parameter(property = "launcher.graph", defaultValue = "false")
+    private boolean graph;
+
+    /**
+     * Run the launch in a child JVM with the closure on its class path, instead of in this JVM.
+     */
+    @Parameter(property = "launcher.fork", defaultValue = "false")
+    private boolean fork;
+
+    /**
+     * With {@link #fork}, use a CDS archive generated for the exact closure by a first training
+     * launch.
+     */
+    @Parameter(property = "launcher.cds", defaultValue = "false")
+    private boolean cds;
+
+    /**
+     * With {@link #fork}, the initial heap of the child JVM, e.g. <code>512m</code>.
+     */
+    @Parameter(property = "launcher.forkInitialHeap")
+    private String forkInitialHeap;
+
+    /**
+     * With {@link #fork}, the maximum heap of the child JVM, e.g. <code>2g</code>.
+     */
+    @Parameter(property = "launcher.forkMaxHeap")
+    private String forkMaxHeap;
+
+    /**
+     * With {@link #fork}, the garbage collector of the child JVM, one of <code>serial</code>,
+     * <code>parallel</code>, <code>g1</code>, <code>z</code> or <code>shenandoah</code>. The
+     * default of the JVM if not set.
+     */
+    @Parameter(property = "launcher.forkGc")
+    private String forkGc;
+
+    /**
+     * With {@link #fork}, how the child JVM compiles: <code>tiered</code>, the default,
+     * <code>c1</code> which stops at the client compiler and suits short jobs, or <code>c2</code>
+     * which uses the server compiler only.
+     */
+    @Parameter(property = "launcher.forkJit", defaultValue = "tiered")
+    private String forkJit = "tiered";
+
+    /**
+     * With {@link #fork}, more options of the child JVM, separated by white space, e.g.
+     * <code>-Dfoo=bar -XX:+AlwaysPreTouch</code>, quoted as {@link #args} are. They come after the
+     * options above.
+     */
+    @Parameter(property = "launcher.forkJvmArgs")
+    private String forkJvmArgs;
+
+    /**
+     * With {@link #fork}, the number of child JVMs which are started ahead, with the closure
+     * loaded, and wait for the next launches of the same artifact. 0 starts a child per launch.
      */
-    @Parameter(property = "mdep.skip", defaultValue = "false")
-    private boolean skip;
+    @Parameter(property = "launcher.forkPool", defaultValue = "0")
+    private int forkPool;
+
+    /**
+     * Seconds a child JVM started ahead waits for a launch before exiting.
+     */
+    @Parameter(property = "launcher.forkPoolIdleTimeout", defaultValue = "600")
+    private int forkPoolIdleTimeout = 600;
+
+    /**
+     * Run the launch in a background JVM which keeps the jar loaders warm between launches. The
+     * daemon is started on the first launch.
+     */
+    @Parameter(property = "launcher.daemon", defaultValue = "false")
+    private boolean daemon;
+
+    /**
+     * Seconds a daemon waits for a launch before exiting.
+     */
+    @Parameter(property = "launcher.daemonIdleTimeout", defaultValue = "10800")
+    private int daemonIdleTimeout = 10800;
+
+    /**
+     * Environment variables, separated by comma, which a launch depends on. A separate daemon is
+     * started for each combination of their values.
+     */
+    @Parameter(property = "launcher.daemonEnvironment",
+            defaultValue = "JAVA_HOME,PATH,LANG,LC_ALL,TZ")
+    private String daemonEnvironment = "JAVA_HOME,PATH,LANG,LC_ALL,TZ";
+
+    /**
+     * Write the time of each phase of the launch and the class loading counters to this file, as
+     * JSON.
+     */
+    @Parameter(property = "launcher.report")
+    private File report;
 
     @Override
     public void execute()
@@ -181,103 +214,98 @@ public class RunnerMojo
                     + "e.g. -Dartifact=org.apache.maven.plugins:maven-downloader-plugin:1.0");
         }
         if (artifact != null) {
-            String[] tokens = StringUtils.split(artifact, ":");
-            if (tokens.length < 3 || tokens.length > 5) {
-                throw new MojoFailureException(
-                        "Invalid artifact, you must specify groupId:artifactId:version[:packaging[:classifier]] "
-                                + artifact);
-            }
-            coordinate.setGroupId(tokens[0]);
-            coordinate.setArtifactId(tokens[1]);
-            coordinate.setVersion(tokens[2]);
-            if (tokens.length >= 4) {
-                coordinate.setType(tokens[3]);
-            }
-            if (tokens.length == 5) {
-                coordinate.setClassifier(tokens[4]);
-            }
+            parseArtifact(artifact, coordinate);
         }
+        checkThreadModel();
+        List<ArtifactRepository> repoList = getRepositories();
 
-        ArtifactRepositoryPolicy always =
-                new ArtifactRepositoryPolicy(true, ArtifactRepositoryPolicy.UPDATE_POLICY_ALWAYS,
-                        ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN);
-
-        List<ArtifactRepository> repoList = new ArrayList<ArtifactRepository>();
-
-        if (pomRemoteRepositories != null) {
-            repoList.addAll(pomRemoteRepositories);
+        if (graph && (fork || daemon)) {
+            getLog().warn("launcher.graph runs the launch in this JVM, ignoring fork and daemon");
         }
-
-        if (remoteRepositories != null) {
-            // Use the same format as in the deploy plugin id::layout::url
-            List<String> repos = Arrays.asList(StringUtils.split(remoteRepositories, ","));
-            for (String repo : repos) {
-                repoList.add(parseRepository(repo, always));
-            }
-        }
-
+        final LaunchReport launchReport = new LaunchReport(coordinate.toString(),
+                graph ? "graph" : fork ? "fork" : daemon ? "daemon" : "in-process");
         try {
-            ProjectBuildingRequest buildingRequest =
-                    new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
-            buildingRequest.setProject(session.getCurrentProject());
-            buildingRequest.setRemoteRepositories(repoList);
-
-            getLog().info("Resolving " + coordinate + " with transitive dependencies");
+            ProjectBuildingRequest buildingRequest = newBuildingRequest(repoList);
 
-            // FIXME
-            // artifactResolver.resolveArtifact( buildingRequest, coordinate );
-
-            final Iterable<ArtifactResult> artifactResults =
-                    dependencyResolver.resolveDependencies(buildingRequest, coordinate, null);
-
-            // start from here
-            if (!artifactResults.iterator().hasNext()) {
+            final LoaderGraph loaderGraph =
+                    graph ? resolveGraph(buildingRequest, launchReport) : null;
+            final List<File> files = loaderGraph != null ? loaderGraph.getFiles()
+                    : resolveClosure(coordinate, buildingRequest, repoList, launchReport);
+            if (files.isEmpty()) {
                 getLog().error("cannot find the first artifcat");
                 return;
             }
-            List<Artifact> listOfArtifacts = new ArrayList<>();
-            for (ArtifactResult artifactResult : artifactResults) {
-                getLog().info("artifacts " + artifactResult.getArtifact());
-                listOfArtifacts.add(
-                        artifactResolver
-                                .resolveArtifact(buildingRequest, artifactResult.getArtifact())
-                                .getArtifact());
-
+            launchReport.begin("manifest");
+            final ManifestMetadata metadata = loadMetadata(files.get(0));
+            // a fat jar is launched from its nested jars, it has neither aggregates nor a profile.
+            final boolean fatJar = NestedJars.isFatJar(metadata.getManifest());
+            final String value = mainClass != null ? mainClass
+                    : fatJar ? NestedJars.getStartClass(metadata.getManifest())
+                            : metadata.getMainClass();
+            if (value == null) {
+                throw new MojoFailureException("cannot find "
+                        + (fatJar ? "Start-Class" : "Main-Class") + " in " + files.get(0)
+                        + ", use -Dlauncher.mainClass");
             }
-            URL[] urls = new URL[listOfArtifacts.size()];
-            for (int i = 0; i < urls.length; ++i) {
-                urls[i] = listOfArtifacts.get(i).getFile().toURI().toURL();
+            if (loaderGraph != null) {
+                checkGraph(files.get(0), metadata, fatJar);
             }
-            final SharedUrlClassLoader classLoader = SharedUrlClassLoader.create(urls);
-
-            final JarFile jarFile = new JarFile(urls[0].getFile());
-            final Manifest manifest = jarFile.getManifest();
-            String value = manifest.getMainAttributes().getValue("Main-Class");
-            // final String charSequence = "cannot find Main-Class: " +
-            // manifest.getMainAttributes().entrySet().stream().map(e -> e.getKey() + ":" +
-            // e.getValue()).collect(Collectors.joining("\n"));
-            if (value == null) {
-                throw new MojoFailureException("cannot find Main-Class " + classLoader.getURLs());
+            final List<File> members = toMemberFiles(files, metadata);
+            final URL[] urls = toMembers(members, metadata);
+            launchReport.setMainClass(value);
+            final String[] args = splitArguments("launcher.args", this.args)
+                    .toArray(new String[0]);
+            final File indexDirectory =
+                    indexCache ? new File(getLauncherDirectory(), "index") : null;
+            if (loaderGraph != null) {
+                launchInGraph(loaderGraph, indexDirectory, value, args, launchReport);
+                return;
             }
-            value = "com.wcy123.HelloWorldApplication";
-            System.out.println("value is value " + value);
-            final Class<?> aClass = Class.forName(value, true, classLoader);
-            final Method main = aClass.getMethod("main", String[].class);
-            Thread runnerThread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        main.invoke(null, new Object[] {new String[] {"hello", "world"}});
-                    } catch (IllegalAccessException | InvocationTargetException e) {
-                        e.printStackTrace();
-                    }
+            if (fork) {
+                launchReport.begin("fork");
+                // the launcher of a fat jar reads its nested jars itself.
+                launchForked(files, metadata.getAddOpens(),
+                        fatJar && mainClass == null ? metadata.getMainClass() : value, args);
+                return;
+            }
+            final File aggregateDirectory = aggregateCache && !fatJar
+                    ? new File(getLauncherDirectory(), "resolved") : null;
+            if (daemon) {
+                launchReport.begin("daemon");
+                if (launchInDaemon(indexDirectory, aggregateDirectory, value, urls, args)) {
+                    return;
                 }
-            });
-            runnerThread.setContextClassLoader(classLoader);
-            runnerThread.start();
-            runnerThread.join();
+                launchReport.setMode("in-process");
+            }
+
+            checkAddOpens(metadata, files.get(0));
+            launchReport.begin("aggregates");
+            final AggregateResources aggregates = aggregateDirectory == null ? null
+                    : AggregateResources.load(aggregateDirectory, members);
+            launchReport.begin("loaders");
+            SharedUrlClassLoader.setMaxIdleLoaders(maxIdleLoaders);
+            SharedUrlClassLoader.setMemoryMapped(mmap);
+            final ClassProfile classProfile = fatJar ? null : loadProfile(members);
+            final SharedUrlClassLoader classLoader = SharedUrlClassLoader.create(urls,
+                    indexDirectory, 0, aggregates, classProfile, isProfiling() && !fatJar);
+            final ClassWarmUp warmUp = startWarmUp(classLoader, classProfile, launchReport);
+            try {
+                runMain(classLoader, value, args, launchReport);
+                getLog().info("class loader lookups: " + classLoader.getLookupCounters());
+            } finally {
+                launchReport.begin("close");
+                finishWarmUp(warmUp, classLoader, fatJar ? null : members);
+                launchReport.setCounters(classLoader.getLookupCounters(),
+                        classLoader.getMemberCounters());
+                classLoader.close();
+                final LoaderStatistics statistics = SharedUrlClassLoader.getStatistics();
+                launchReport.setStatistics(statistics);
+                getLog().info("shared loaders: " + statistics);
+            }
         } catch (DependencyResolverException e) {
             throw new MojoExecutionException("Couldn't download artifact: " + e.getMessage(), e);
+        } catch (DependencyCollectionException e) {
+            throw new MojoExecutionException("Couldn't collect dependencies: " + e.getMessage(), e);
         } catch (IOException e) {
             getLog().error("cannot create class loader", e);
             throw new MojoFailureException("cannot create class loader");
@@ -292,56 +320,217 @@ public class RunnerMojo
             throw new MojoFailureException("cannot get main method");
         } catch (InterruptedException e) {
             getLog().error("interrupted", e);
+        } finally {
+            finishReport(launchReport);
         }
     }
 
-    private String readStream(InputStream input) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        for (int c = input.read(); c != -1; c = input.read()) {
-            sb.append((char) c);
-        }
-        return sb.toString();
-    }
-    ArtifactRepository parseRepository(String repo, ArtifactRepositoryPolicy policy)
-            throws MojoFailureException {
-        // if it's a simple url
-        String id = "temp";
-        ArtifactRepositoryLayout layout = getLayout("default");
-        String url = repo;
-
-        // if it's an extended repo URL of the form id::layout::url
-        if (repo.contains("::")) {
-            Matcher matcher = ALT_REPO_SYNTAX_PATTERN.matcher(repo);
-            if (!matcher.matches()) {
-                throw new MojoFailureException(repo, "Invalid syntax for repository: " + repo,
-                        "Invalid syntax for repository. Use \"id::layout::url\" or \"URL\".");
+    /**
+     * Runs <code>main</code> of <code>mainClass</code> on a thread of its own, whose context class
+     * loader is <code>classLoader</code>, and waits for it and for the non-daemon threads it
+     * started, which load classes until they end.
+     */
+    private void runMain(final ClassLoader classLoader, String mainClass, final String[] args,
+            LaunchReport launchReport)
+            throws ClassNotFoundException, NoSuchMethodException, InterruptedException {
+        launchReport.begin("init");
+        final Class<?> aClass = Class.forName(mainClass, true, classLoader);
+        final Method main = aClass.getMethod("main", String[].class);
+        launchReport.begin("run");
+        Thread runnerThread = newMainThread(coordinate.getArtifactId(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    main.invoke(null, new Object[] {args});
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    e.printStackTrace();
+                }
             }
+        });
+        runnerThread.setContextClassLoader(classLoader);
+        final Set<Thread> existing = MainThreads.liveThreads();
+        runnerThread.start();
+        runnerThread.join();
+        MainThreads.joinNonDaemonThreads(existing, null);
+    }
 
-            id = matcher.group(1).trim();
-            if (!StringUtils.isEmpty(matcher.group(2))) {
-                layout = getLayout(matcher.group(2).trim());
+    private void finishReport(LaunchReport launchReport) {
+        launchReport.end();
+        LauncherMetrics.get().record(launchReport);
+        getLog().info("launch phases: " + launchReport);
+        if (report != null) {
+            try {
+                launchReport.write(report);
+            } catch (IOException e) {
+                getLog().warn("cannot write the launch report to " + report, e);
             }
-            url = matcher.group(3).trim();
         }
-        return new MavenArtifactRepository(id, url, layout, policy, policy);
     }
 
-    private ArtifactRepositoryLayout getLayout(String id)
+    /**
+     * @return the dependency graph of {@link #coordinate}, with its artifacts resolved.
+     */
+    private LoaderGraph resolveGraph(ProjectBuildingRequest buildingRequest,
+            LaunchReport launchReport) throws DependencyCollectionException,
+            ArtifactResolverException {
+        getLog().info("Resolving the dependency graph of " + coordinate);
+        final ParallelArtifactResolver resolver = new ParallelArtifactResolver(repositorySystem,
+                artifactResolver, Math.max(1, resolveThreads));
+        launchReport.begin("collect");
+        final DependencyNode root = resolver.collectGraph(buildingRequest, coordinate);
+        launchReport.begin("download");
+        return LoaderGraph.resolve(root, resolver, buildingRequest);
+    }
+
+    /**
+     * The graph has a loader per artifact of the poms, the jars of a fat jar and of a manifest
+     * <code>Class-Path</code> have no place in it.
+     */
+    private static void checkGraph(File jar, ManifestMetadata metadata, boolean fatJar)
             throws MojoFailureException {
-        ArtifactRepositoryLayout layout = repositoryLayouts.get(id);
+        if (fatJar) {
+            throw new MojoFailureException("launcher.graph cannot launch the fat jar "
+                    + jar.getName() + ", launch it without launcher.graph");
+        }
+        if (!metadata.getClassPath(jar).isEmpty()) {
+            throw new MojoFailureException("launcher.graph cannot launch " + jar.getName()
+                    + ", whose manifest has a Class-Path, launch it without launcher.graph");
+        }
+    }
 
-        if (layout == null) {
-            throw new MojoFailureException(id, "Invalid repository layout",
-                    "Invalid repository layout: " + id);
+    private void launchInGraph(LoaderGraph loaderGraph, File indexDirectory, String mainClass,
+            String[] args, LaunchReport launchReport) throws IOException, ClassNotFoundException,
+            NoSuchMethodException, InterruptedException {
+        launchReport.begin("loaders");
+        final MavenClassLoader classLoader = loaderGraph.open(indexDirectory);
+        try {
+            runMain(classLoader, mainClass, args, launchReport);
+            getLog().info("class loader lookups: " + classLoader.getLookupCounters());
+        } finally {
+            launchReport.begin("close");
+            launchReport.setCounters(classLoader.getLookupCounters(), loaderGraph.getCounters());
+            loaderGraph.close();
         }
+    }
 
-        return layout;
+    private void launchForked(List<File> files, List<String> addOpens, String mainClass,
+            String[] args) throws MojoFailureException, InterruptedException {
+        if (cds && !ForkedLauncher.supportsDynamicArchive()) {
+            getLog().warn("CDS archives need a JDK 13 or later, launching without");
+        }
+        final List<String> options = getForkOptions();
+        if (Utils.featureVersion() >= 9) {
+            for (String opens : addOpens) {
+                options.add("--add-opens=" + opens + "=ALL-UNNAMED");
+            }
+        }
+        options.addAll(splitArguments("launcher.forkJvmArgs", forkJvmArgs));
+        final ForkPool pool = forkPool <= 0 ? null
+                : new ForkPool(new File(getLauncherDirectory(), "pool"), forkPool,
+                        forkPoolIdleTimeout * 1000L,
+                        Arrays.asList(StringUtils.split(daemonEnvironment, ",")),
+                        getProfileDirectory());
+        final ForkedLauncher launcher = new ForkedLauncher(
+                cds ? new File(getLauncherDirectory(), "cds") : null,
+                new File(getLauncherDirectory(), "args"), pool);
+        final int exitCode;
+        try {
+            exitCode = launcher.launch(files, options, mainClass, args);
+        } catch (DaemonClient.ConnectionLostException e) {
+            throw new MojoFailureException(mainClass + " did not finish in the pooled child JVM: "
+                    + e.getMessage());
+        } catch (IOException e) {
+            getLog().error("cannot start a child JVM", e);
+            throw new MojoFailureException("cannot start a child JVM for " + mainClass);
+        }
+        if (exitCode != 0) {
+            throw new MojoFailureException(mainClass + " exited with " + exitCode);
+        }
+    }
+
+    /**
+     * @return the heap, GC and JIT options of a child JVM.
+     */
+    private List<String> getForkOptions() throws MojoFailureException {
+        final List<String> ret = new ArrayList<>();
+        if (forkInitialHeap != null) {
+            ret.add("-Xms" + forkInitialHeap);
+        }
+        if (forkMaxHeap != null) {
+            ret.add("-Xmx" + forkMaxHeap);
+        }
+        if (forkGc != null) {
+            switch (forkGc) {
+                case "serial":
+                    ret.add("-XX:+UseSerialGC");
+                    break;
+                case "parallel":
+                    ret.add("-XX:+UseParallelGC");
+                    break;
+                case "g1":
+                    ret.add("-XX:+UseG1GC");
+                    break;
+                case "z":
+                    ret.add("-XX:+UseZGC");
+                    break;
+                case "shenandoah":
+                    ret.add("-XX:+UseShenandoahGC");
+                    break;
+                default:
+                    throw new MojoFailureException("invalid launcher.forkGc " + forkGc
+                            + ", expected serial, parallel, g1, z or shenandoah");
+            }
+        }
+        switch (forkJit) {
+            case "tiered":
+                break;
+            case "c1":
+                ret.add("-XX:TieredStopAtLevel=1");
+                break;
+            case "c2":
+                ret.add("-XX:-TieredCompilation");
+                break;
+            default:
+                throw new MojoFailureException(
+                        "invalid launcher.forkJit " + forkJit + ", expected tiered, c1 or c2");
+        }
+        return ret;
     }
 
-    protected boolean isSkip() {
-        return skip;
+    /**
+     * @return false if the daemon cannot be reached or refused the launch, which must run in this
+     *         JVM then.
+     */
+    private boolean launchInDaemon(File indexDirectory, File aggregateDirectory, String mainClass,
+            URL[] urls, String[] args) throws MojoFailureException {
+        final DaemonClient client = new DaemonClient(new File(getLauncherDirectory(), "daemon"),
+                daemonIdleTimeout * 1000L,
+                Arrays.asList(StringUtils.split(daemonEnvironment, ",")));
+        final int exitCode;
+        try {
+            exitCode = client.launch(indexDirectory, aggregateDirectory, mainClass, urls, args,
+                    System.out, System.err);
+        } catch (DaemonClient.ConnectionLostException e) {
+            // the launch ran at least partly, running it again could repeat what it did.
+            throw new MojoFailureException(mainClass + " did not finish in the daemon: "
+                    + e.getMessage());
+        } catch (IOException e) {
+            getLog().warn("cannot launch in the daemon, launching in this JVM: " + e.getMessage());
+            return false;
+        }
+        if (exitCode != 0) {
+            throw new MojoFailureException(mainClass + " exited with " + exitCode);
+        }
+        return true;
     }
 
+    private String readStream(InputStream input) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c = input.read(); c != -1; c = input.read()) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
     // @Parameter( alias = "groupId" )
     public void setGroupId(String groupId) {
         this.coordinate.setGroupId(groupId);
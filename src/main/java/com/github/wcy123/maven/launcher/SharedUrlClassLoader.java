@@ -1,50 +1,390 @@
 package com.github.wcy123.maven.launcher;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Manifest;
 
+/**
+ * A class loader per jar, shared by all the launches of the JVM which use the jar together with
+ * the same other shared jars.
+ *
+ * {@link #create} returns the entry loader of a group, i.e. of a launch. The group owns no jar
+ * itself, it routes every lookup to the member which owns the entry. A member is bound to one live
+ * group, which its own lookups go through. Closing the entry loader releases the members of the
+ * group, a member which is no longer used by any live group is kept in a bounded LRU list, so that
+ * the next launch may reuse it, and closed when it falls out of the list.
+ *
+ * The classes of a member link against the classes of the group it is bound to. A member is
+ * therefore shared only by the groups whose shared members are the same jars, a launch which
+ * depends on another version of one of them gets members of its own.
+ */
 public class SharedUrlClassLoader extends URLClassLoader {
+    static {
+        // lock per class name instead of the loader, the launched application loads classes from
+        // many threads.
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    /**
+     * maximum number of jar loaders kept when no launch uses them.
+     */
+    public static final int DEFAULT_MAX_IDLE_LOADERS = 256;
+
     private final static Map<String, SharedUrlClassLoader> cache = new ConcurrentHashMap<>();
     private final static Map<String, URL> cacheFile = new ConcurrentHashMap<>();
-    private final static Map<String, CL> cacheClassLoader = new ConcurrentHashMap<>();
-    private final Set<SharedUrlClassLoader> collections;
+    /**
+     * guards the membership of the groups, {@link #idle} and {@link #maxIdleLoaders}.
+     */
+    private final static Object lock = new Object();
+    private final static LinkedHashMap<String, SharedUrlClassLoader> idle =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private static int maxIdleLoaders = DEFAULT_MAX_IDLE_LOADERS;
+    private static volatile boolean memoryMapped;
+    /**
+     * the members of a group, in classpath order. <code>null</code> for a member.
+     */
+    private final List<SharedUrlClassLoader> collections;
+    /**
+     * the live groups which contain a member. <code>null</code> for a group.
+     */
+    private final List<SharedUrlClassLoader> groups;
+    private volatile PackageIndex index;
     private final String key;
+    /**
+     * a member which belongs to one group only and is closed with it.
+     */
+    private final boolean isolated;
+    /**
+     * a member of a fat jar, see {@link NestedJars}, which only {@link MappedJarFile} can read.
+     */
+    private final boolean nested;
+    private boolean closed;
+    private final Object mappingLock = new Object();
+    private volatile MappedJarFile mapped;
+    private volatile boolean unmappable;
+    private CodeSource codeSource;
+    private final ClassSizes sizes;
+    /**
+     * the classes a member defined, whichever group asked for them.
+     */
+    private final LookupCounters counters = new LookupCounters();
 
-    private SharedUrlClassLoader(Set<SharedUrlClassLoader> collections, String key, URL url)
+    private SharedUrlClassLoader(String key, URL url, boolean isolated)
             throws MalformedURLException {
         super(myGuessUrls(key, url));
-        this.collections = collections;
+        this.collections = null;
+        this.groups = new ArrayList<>(1);
         this.key = key;
+        this.isolated = isolated;
+        this.nested = NestedJars.isNested(url);
+        this.sizes = new ClassSizes(nested ? null : PackageIndex.toFile(url));
+    }
+
+    private SharedUrlClassLoader(PackageIndex index) {
+        super(new URL[0]);
+        this.collections = new ArrayList<>();
+        this.groups = null;
+        this.index = index;
+        this.key = null;
+        this.isolated = false;
+        this.nested = false;
+        this.sizes = new ClassSizes(null);
     }
 
     public static SharedUrlClassLoader create(URL urls[]) throws IOException {
+        return create(urls, null);
+    }
+
+    /**
+     * @param urls the members of the group, in classpath order.
+     * @param indexDirectory where the index of each jar is cached between launches,
+     *        <code>null</code> to scan the jars every time.
+     * @return the entry loader of the group, {@link #close()} it when the launch ends.
+     */
+    public static SharedUrlClassLoader create(URL urls[], File indexDirectory) throws IOException {
+        return create(urls, indexDirectory, 0);
+    }
+
+    /**
+     * @param urls the members of the group, in classpath order.
+     * @param indexDirectory where the index of each jar is cached between launches,
+     *        <code>null</code> to scan the jars every time.
+     * @param isolated the number of leading <code>urls</code> which get loaders of their own,
+     *        e.g. the application jar, so that their classes and static state are not shared
+     *        with any other launch.
+     * @return the entry loader of the group, {@link #close()} it when the launch ends.
+     */
+    public static SharedUrlClassLoader create(URL urls[], File indexDirectory, int isolated)
+            throws IOException {
+        return create(urls, indexDirectory, isolated, null);
+    }
+
+    /**
+     * @param urls the members of the group, in classpath order.
+     * @param indexDirectory where the index of each jar is cached between launches,
+     *        <code>null</code> to scan the jars every time.
+     * @param isolated the number of leading <code>urls</code> which get loaders of their own.
+     * @param aggregates the aggregate resources of <code>urls</code>, which answer their lookups
+     *        from memory, <code>null</code> to ask the jars.
+     * @return the entry loader of the group, {@link #close()} it when the launch ends.
+     */
+    public static SharedUrlClassLoader create(URL urls[], File indexDirectory, int isolated,
+            AggregateResources aggregates) throws IOException {
+        return create(urls, indexDirectory, isolated, aggregates, null);
+    }
+
+    /**
+     * @param urls the members of the group, in classpath order.
+     * @param indexDirectory where the index of each jar is cached between launches,
+     *        <code>null</code> to scan the jars every time.
+     * @param isolated the number of leading <code>urls</code> which get loaders of their own.
+     * @param aggregates the aggregate resources of <code>urls</code>, which answer their lookups
+     *        from memory, <code>null</code> to ask the jars.
+     * @param profile the classes a previous launch of <code>urls</code> loaded, each looked up in
+     *        the jar which had it first, <code>null</code> to route by package only.
+     * @return the entry loader of the group, {@link #close()} it when the launch ends.
+     */
+    public static SharedUrlClassLoader create(URL urls[], File indexDirectory, int isolated,
+            AggregateResources aggregates, ClassProfile profile) throws IOException {
+        return create(urls, indexDirectory, isolated, aggregates, profile, false);
+    }
+
+    /**
+     * @param urls the members of the group, in classpath order.
+     * @param indexDirectory where the index of each jar is cached between launches,
+     *        <code>null</code> to scan the jars every time.
+     * @param isolated the number of leading <code>urls</code> which get loaders of their own.
+     * @param aggregates the aggregate resources of <code>urls</code>, which answer their lookups
+     *        from memory, <code>null</code> to ask the jars.
+     * @param profile the classes a previous launch of <code>urls</code> loaded, each looked up in
+     *        the jar which had it first, <code>null</code> to route by package only.
+     * @param recordClasses record the classes the group finds, to keep the profile of the launch,
+     *        see {@link #getFoundClasses()}.
+     * @return the entry loader of the group, {@link #close()} it when the launch ends.
+     */
+    public static SharedUrlClassLoader create(URL urls[], File indexDirectory, int isolated,
+            AggregateResources aggregates, ClassProfile profile, boolean recordClasses)
+            throws IOException {
         if (urls.length == 0) {
             throw new IllegalArgumentException("URL length is zero");
         }
-        Set<SharedUrlClassLoader> collections = new HashSet<>();
-        SharedUrlClassLoader ret = null;
-        for (int i = 0; i < urls.length; ++i) {
-            final URL url = urls[i];
-            final String key = url.toString();
-            if (!cache.containsKey(key)) {
-                cache.put(key, new SharedUrlClassLoader(collections, key, url));
+        final SharedUrlClassLoader ret =
+                new SharedUrlClassLoader(new PackageIndex(indexDirectory, recordClasses));
+        final String closure = closureOf(urls, isolated);
+        synchronized (lock) {
+            for (int i = 0; i < urls.length; ++i) {
+                final URL url = urls[i];
+                final String key = i < isolated ? url.toString() : url + "#" + closure;
+                SharedUrlClassLoader value = i < isolated ? null : cache.get(key);
+                if (value == null) {
+                    value = new SharedUrlClassLoader(key, url, i < isolated);
+                    if (!value.isolated) {
+                        cache.put(key, value);
+                    }
+                }
+                if (!value.groups.contains(ret)) {
+                    idle.remove(key);
+                    value.groups.add(ret);
+                    ret.collections.add(value);
+                }
+            }
+        }
+        try {
+            final List<File> files = toFiles(ret.collections);
+            final boolean restored = files != null && ret.index.load(ret.collections, files);
+            if (!restored) {
+                for (SharedUrlClassLoader member : ret.collections) {
+                    ret.index.add(member, getURL(member.key));
+                }
+            }
+            ret.index.setAggregates(aggregates);
+            if (profile != null) {
+                ret.index.setHints(toHints(ret.collections, urls, profile));
+            }
+            ret.index.seal();
+            if (!restored && files != null) {
+                ret.index.store(ret.collections, files);
+            }
+        } catch (IOException | RuntimeException e) {
+            ret.close();
+            throw e;
+        }
+        synchronized (lock) {
+            for (SharedUrlClassLoader member : ret.collections) {
+                if (member.index == null) {
+                    member.index = ret.index;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return a hash of the shared members of a group, whatever their order, which tells the
+     *         groups whose members link against the same jars.
+     */
+    private static String closureOf(URL[] urls, int isolated) {
+        final List<String> shared = new ArrayList<>();
+        for (int i = Math.max(0, isolated); i < urls.length; ++i) {
+            shared.add(urls[i].toString());
+        }
+        Collections.sort(shared);
+        final StringBuilder sb = new StringBuilder();
+        for (String url : shared) {
+            sb.append(url).append('\n');
+        }
+        return JarIndex.sha1(sb.toString());
+    }
+
+    /**
+     * @return the file of each member, the fat jar of a nested one, or <code>null</code> if a
+     *         member is not a local file. the files are not checked, {@link PackageIndex#load}
+     *         compares them with the ones it kept.
+     */
+    private static List<File> toFiles(List<SharedUrlClassLoader> members) {
+        final List<File> ret = new ArrayList<>(members.size());
+        for (SharedUrlClassLoader member : members) {
+            final URL url = getURL(member.key);
+            final File file = url == null ? null
+                    : member.nested ? NestedJars.getFile(url) : PackageIndex.toFile(url);
+            if (file == null) {
+                return null;
             }
-            final SharedUrlClassLoader value = cache.get(key);
-            collections.add(value);
-            if (ret == null) {
-                ret = value;
+            ret.add(file);
+        }
+        return ret;
+    }
+
+    private static Map<String, SharedUrlClassLoader> toHints(
+            List<SharedUrlClassLoader> members, URL[] urls, ClassProfile profile) {
+        final Map<String, SharedUrlClassLoader> byUrl = new HashMap<>();
+        for (SharedUrlClassLoader member : members) {
+            byUrl.put(member.getURLs()[0].toString(), member);
+        }
+        final Map<String, SharedUrlClassLoader> ret = new HashMap<>();
+        final List<String> classNames = profile.getClassNames();
+        for (int i = 0; i < classNames.size(); ++i) {
+            final int jar = profile.getJar(i);
+            final SharedUrlClassLoader member =
+                    jar < urls.length ? byUrl.get(urls[jar].toString()) : null;
+            if (member != null) {
+                ret.put(classNames.get(i), member);
             }
         }
         return ret;
     }
 
+    /**
+     * @param max maximum number of jar loaders kept when no launch uses them, 0 to close them as
+     *        soon as their last launch ends.
+     */
+    public static void setMaxIdleLoaders(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max must not be negative: " + max);
+        }
+        synchronized (lock) {
+            maxIdleLoaders = max;
+            evict();
+        }
+    }
+
+    /**
+     * @param enabled read the classes of the jars through {@link MappedJarFile} instead of
+     *        {@link java.util.jar.JarFile}. signed jars are always read by
+     *        {@link URLClassLoader}, nested jars of a fat jar always by {@link MappedJarFile}.
+     */
+    public static void setMemoryMapped(boolean enabled) {
+        memoryMapped = enabled;
+    }
+
+    /**
+     * @return the loaders, classes and metaspace currently retained by the shared loaders.
+     */
+    public static LoaderStatistics getStatistics() {
+        synchronized (lock) {
+            int definedClasses = 0;
+            for (SharedUrlClassLoader member : cache.values()) {
+                definedClasses += (int) member.counters.getClassesDefined();
+            }
+            return new LoaderStatistics(cache.size(), idle.size(), definedClasses);
+        }
+    }
+
+    /**
+     * Ends the launch of a group: the members which no other live group uses become idle. Closing
+     * a member closes its jar.
+     */
+    @Override
+    public void close() throws IOException {
+        if (collections != null) {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                for (SharedUrlClassLoader member : collections) {
+                    member.groups.remove(this);
+                    if (member.isolated) {
+                        member.index = null;
+                        member.close();
+                        continue;
+                    }
+                    if (member.groups.isEmpty()) {
+                        idle.put(member.key, member);
+                    }
+                    if (member.index == index) {
+                        // bind to another live group, or to the next group which uses it.
+                        member.index = null;
+                        for (SharedUrlClassLoader group : member.groups) {
+                            if (group.index.isSealed()) {
+                                member.index = group.index;
+                                break;
+                            }
+                        }
+                    }
+                }
+                evict();
+            }
+        }
+        mapped = null;
+        if (nested) {
+            // the URL of a member.
+            NestedJars.release(getURLs()[0]);
+        }
+        super.close();
+    }
+
+    private static void evict() {
+        final Iterator<SharedUrlClassLoader> it = idle.values().iterator();
+        while (idle.size() > maxIdleLoaders && it.hasNext()) {
+            final SharedUrlClassLoader member = it.next();
+            it.remove();
+            cache.remove(member.key);
+            cacheFile.remove(member.key);
+            try {
+                member.close();
+            } catch (IOException e) {
+                // nothing more can be released.
+            }
+        }
+    }
+
     public static URL getURL(String key) {
         return cacheFile.get(key);
     }
@@ -56,62 +396,224 @@ public class SharedUrlClassLoader extends URLClassLoader {
 
     @Override
     public Class<?> findClass(String name) throws ClassNotFoundException {
-        for (SharedUrlClassLoader cl : collections) {
-            try {
-                return cl.superFindClass1(name);
-            } catch (ClassNotFoundException ex) {
-                // it is OK
+        final PackageIndex index = this.index;
+        if (index == null) {
+            // an idle member, nothing but stale references ask it.
+            return super.findClass(name);
+        }
+        final long start = System.nanoTime();
+        try {
+            final SharedUrlClassLoader hinted = index.hint(name);
+            if (hinted != null) {
+                try {
+                    index.probe();
+                    final Class<?> ret = hinted.superFindClass1(name, index.getCounters());
+                    index.found(name, hinted);
+                    // when the hint misses, mayContain counts the lookup instead.
+                    index.getCounters().lookup();
+                    return ret;
+                } catch (ClassNotFoundException ex) {
+                    // the jar changed since the profile was recorded.
+                }
             }
+            final String path = name.replace('.', '/').concat(".class");
+            if (!index.mayContain(path)) {
+                throw new ClassNotFoundException(name);
+            }
+            for (SharedUrlClassLoader cl : index.forClass(name)) {
+                try {
+                    index.probe();
+                    final Class<?> ret = cl.superFindClass1(name, index.getCounters());
+                    index.found(name, cl);
+                    return ret;
+                } catch (ClassNotFoundException ex) {
+                    // it is OK
+                }
+            }
+            index.miss(path);
+            throw new ClassNotFoundException(name);
+        } finally {
+            index.getCounters().findClass(System.nanoTime() - start);
         }
-        throw new ClassNotFoundException(name);
     }
 
     @Override
     public URL findResource(String name) {
-        for (SharedUrlClassLoader cl : collections) {
+        final PackageIndex index = this.index;
+        if (index == null) {
+            return super.findResource(name);
+        }
+        final List<URL> aggregated = index.aggregated(name);
+        if (aggregated != null) {
+            return aggregated.isEmpty() ? null : aggregated.get(0);
+        }
+        if (!index.mayContain(name)) {
+            return null;
+        }
+        for (SharedUrlClassLoader cl : index.forResource(name)) {
+            index.probe();
             final URL url = cl.superFindResource(name);
             if (url != null) {
                 return url;
             }
         }
+        index.miss(name);
         return null;
     }
 
     @Override
     public Enumeration<URL> findResources(String name) throws IOException {
-        Enumeration<URL> ret = null;
-        for (SharedUrlClassLoader cl : collections) {
-            if (ret == null) {
-                ret = cl.superFindResources(name);
-            } else {
-                ret = Utils.concat(ret, cl.superFindResources(name));
-            }
+        final PackageIndex index = this.index;
+        if (index == null) {
+            return super.findResources(name);
         }
-        return ret;
+        final List<URL> aggregated = index.aggregated(name);
+        if (aggregated != null) {
+            return aggregated.isEmpty() ? Collections.<URL>emptyEnumeration()
+                    : Collections.enumeration(aggregated);
+        }
+        if (!index.mayContain(name)) {
+            return Collections.emptyEnumeration();
+        }
+        final List<SharedUrlClassLoader> owners = index.forResource(name);
+        if (owners.isEmpty()) {
+            return Collections.emptyEnumeration();
+        }
+        return new OwnerResources(index, owners, name);
     }
 
     public Enumeration<URL> superFindResources(String name) throws IOException {
+        if (nested) {
+            final URL url = superFindResource(name);
+            return url == null ? Collections.<URL>emptyEnumeration()
+                    : Collections.enumeration(Collections.singletonList(url));
+        }
         return super.findResources(name);
     }
 
     private URL superFindResource(String name) {
+        if (nested) {
+            try {
+                return NestedJars.getResource(getFileName(), name);
+            } catch (IOException e) {
+                return null;
+            }
+        }
         return super.findResource(name);
     }
 
-    private Class<?> superFindClass1(String name) throws ClassNotFoundException {
-        try {
-            if (cacheClassLoader.containsKey(name)) {
-                return cacheClassLoader.get(name).getClazz();
+    /**
+     * Defines <code>name</code> from the jar of this member. a class is cached by the member which
+     * defined it only, so that another group never gets it from a jar which is not the first of
+     * its own classpath to have it.
+     */
+    private Class<?> superFindClass1(String name, LookupCounters groupCounters)
+            throws ClassNotFoundException {
+        final Class<?> loaded = findLoadedClass(name);
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (getClassLoadingLock(name)) {
+            // another thread may have defined it while we were waiting for the lock.
+            Class<?> aClass = findLoadedClass(name);
+            if (aClass == null) {
+                final long start = System.nanoTime();
+                final long[] bytesRead = {0};
+                aClass = findMappedClass(name, bytesRead);
+                if (aClass == null) {
+                    aClass = super.findClass(name);
+                    bytesRead[0] = sizes.of(name);
+                }
+                counters.classDefined(bytesRead[0]);
+                counters.findClass(System.nanoTime() - start);
+                groupCounters.classDefined(bytesRead[0]);
             }
-            final Class<?> aClass = super.findClass(name);
-            // System.out.println("loaded class " + name + " by " + id());
-            // System.out.println("classLoader is " + aClass.getClassLoader());
-            cacheClassLoader.put(name, new CL(this, aClass));
             return aClass;
-        } catch (ClassNotFoundException ex) {
-            // System.out.println("cannot find class " + name + " by " + id());
-            // do not matter.
-            throw ex;
+        }
+    }
+
+    /**
+     * @return the class defined from the memory mapped jar, or <code>null</code> if the jar is not
+     *         mapped and {@link URLClassLoader} must read it.
+     */
+    private Class<?> findMappedClass(String name, long[] bytesRead)
+            throws ClassNotFoundException {
+        final MappedJarFile jar = getMappedJar();
+        if (jar == null) {
+            return null;
+        }
+        final ByteBuffer bytes;
+        try {
+            bytes = jar.getBytes(name.replace('.', '/').concat(".class"));
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        final int i = name.lastIndexOf('.');
+        if (i > 0) {
+            definePackage(name.substring(0, i), jar);
+        }
+        bytesRead[0] = bytes.remaining();
+        return defineClass(name, bytes, codeSource);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackage(String packageName, MappedJarFile jar) {
+        if (getPackage(packageName) != null) {
+            return;
+        }
+        try {
+            final Manifest manifest = jar.getManifest();
+            if (manifest != null) {
+                definePackage(packageName, manifest, getFileName());
+            } else {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            }
+        } catch (IOException e) {
+            definePackage(packageName, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException e) {
+            // another class of the package defined it concurrently.
+        }
+    }
+
+    private MappedJarFile getMappedJar() {
+        if (!(memoryMapped || nested) || unmappable || key == null) {
+            return null;
+        }
+        MappedJarFile ret = mapped;
+        if (ret != null) {
+            return ret;
+        }
+        synchronized (mappingLock) {
+            if (mapped == null && !unmappable) {
+                final URL url = getFileName();
+                final File file = url == null ? null : PackageIndex.toFile(url);
+                try {
+                    if (nested) {
+                        // signed ones too, URLClassLoader cannot read them.
+                        codeSource = new CodeSource(url, (CodeSigner[]) null);
+                        mapped = NestedJars.open(url);
+                    } else if (file == null || !file.isFile()) {
+                        unmappable = true;
+                    } else {
+                        final MappedJarFile jar = MappedJarFile.open(file);
+                        // the versioned entries of a multi-release jar are resolved by
+                        // MappedJarFile, the signatures of a signed one are not verified.
+                        if (jar.isSigned()) {
+                            unmappable = true;
+                        } else {
+                            codeSource = new CodeSource(url, (CodeSigner[]) null);
+                            mapped = jar;
+                        }
+                    }
+                } catch (IOException e) {
+                    // e.g. ZIP64, JarFile can read it.
+                    unmappable = true;
+                }
+            }
+            return mapped;
         }
     }
 
@@ -119,25 +621,86 @@ public class SharedUrlClassLoader extends URLClassLoader {
         return getFileName() + "@" + this;
     }
 
+    /**
+     * @return the lookup counters of the group this loader belongs to.
+     */
+    public LookupCounters getLookupCounters() {
+        final PackageIndex index = this.index;
+        return index == null ? new LookupCounters() : index.getCounters();
+    }
+
+    /**
+     * @return the classes the group found in its jars since it was created and the jar which had
+     *         each of them, in the order they were first found. empty unless the group was
+     *         created to record them.
+     */
+    public Map<String, URL> getFoundClasses() {
+        final Map<String, URL> ret = new LinkedHashMap<>();
+        final PackageIndex index = this.index;
+        if (index != null) {
+            for (Map.Entry<String, SharedUrlClassLoader> entry
+                    : index.getFoundClasses().entrySet()) {
+                ret.put(entry.getKey(), entry.getValue().getFileName());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the counters of each jar of the group, in classpath order. a jar loader counts the
+     *         classes it defined since it was created, for all the launches which shared it.
+     */
+    public Map<URL, LookupCounters> getMemberCounters() {
+        final Map<URL, LookupCounters> ret = new LinkedHashMap<>();
+        if (collections == null) {
+            ret.put(getFileName(), counters);
+            return ret;
+        }
+        for (SharedUrlClassLoader member : collections) {
+            ret.put(member.getFileName(), member.counters);
+        }
+        return ret;
+    }
+
     public URL getFileName() {
-        return getURL(this.key);
+        return key == null ? null : getURL(this.key);
     }
 
-    private static class CL {
-        private final SharedUrlClassLoader loader;
-        private final Class<?> clazz;
+    /**
+     * The resources of the owners of a name, each owner is asked only when the previous one is
+     * exhausted. A member has a single URL, so it has at most one resource of a given name.
+     */
+    private static class OwnerResources implements Enumeration<URL> {
+        private final PackageIndex index;
+        private final List<SharedUrlClassLoader> owners;
+        private final String name;
+        private int next;
+        private URL url;
 
-        private CL(SharedUrlClassLoader loader, Class<?> clazz) {
-            this.loader = loader;
-            this.clazz = clazz;
+        private OwnerResources(PackageIndex index, List<SharedUrlClassLoader> owners,
+                String name) {
+            this.index = index;
+            this.owners = owners;
+            this.name = name;
         }
 
-        public SharedUrlClassLoader getLoader() {
-            return loader;
+        @Override
+        public boolean hasMoreElements() {
+            while (url == null && next < owners.size()) {
+                index.probe();
+                url = owners.get(next++).superFindResource(name);
+            }
+            return url != null;
         }
 
-        public Class<?> getClazz() {
-            return clazz;
+        @Override
+        public URL nextElement() {
+            if (!hasMoreElements()) {
+                throw new NoSuchElementException(name);
+            }
+            final URL ret = url;
+            url = null;
+            return ret;
         }
     }
 }
@@ -30,9 +30,20 @@ package com.github.wcy123.maven.launcher;
  * option applies only if the new code is made subject to such option by the copyright holder.
  */
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -58,6 +69,130 @@ public class Utils {
         return new SeqEn<T>(Collections.enumeration(two));
     }
 
+    /**
+     * @return the feature release of the running JVM, 8 for <code>1.8</code>, 8 as well when the
+     *         version cannot be parsed.
+     */
+    static int featureVersion() {
+        final String version = System.getProperty("java.specification.version");
+        try {
+            return version.startsWith("1.") ? Integer.parseInt(version.substring(2))
+                    : Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+
+    /**
+     * The content of a file written by {@link #writeAtomically}.
+     */
+    interface Content {
+        /**
+         * @param out the temporary file, closed afterwards.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes <code>file</code> aside, to a temporary file of the same directory, and moves it over
+     * <code>file</code>, so that concurrent launches read the previous content or the new one but
+     * never a partial file.
+     *
+     * @param ownerOnly whether only the owner may read the file
+     */
+    static void writeAtomically(File file, boolean ownerOnly, Content content)
+            throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            if (ownerOnly) {
+                tmp.setReadable(false, false);
+                tmp.setReadable(true, true);
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                content.writeTo(out);
+            }
+            moveAtomically(tmp, file);
+        } finally {
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Moves <code>from</code> over <code>to</code>, atomically where the file system supports it.
+     */
+    static void moveAtomically(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes a file kept between launches, e.g. the index of a jar or the closure of an artifact,
+     * with {@link #writeAtomically}. Such a file is an optimization only: when it cannot be
+     * written the failure is ignored, and the next launch computes its content again.
+     *
+     * @return false if the file was not written.
+     */
+    static boolean writeCache(File file, Content content) {
+        try {
+            writeAtomically(file, false, content);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the header of a file derived from <code>jars</code>: <code>tags</code>, e.g. the
+     * magic number and the version of the format, then the path, the length and the time of the
+     * last modification of each jar.
+     */
+    static void writeHeader(DataOutputStream out, List<File> jars, int... tags)
+            throws IOException {
+        for (int tag : tags) {
+            out.writeInt(tag);
+        }
+        out.writeInt(jars.size());
+        for (File jar : jars) {
+            out.writeUTF(jar.getAbsolutePath());
+            out.writeLong(jar.length());
+            out.writeLong(jar.lastModified());
+        }
+    }
+
+    /**
+     * Reads the header written by {@link #writeHeader}.
+     *
+     * @return false if the file has another format or was derived from other jars, or if one of
+     *         <code>jars</code> changed since.
+     */
+    static boolean readHeader(DataInputStream in, List<File> jars, int... tags)
+            throws IOException {
+        for (int tag : tags) {
+            if (in.readInt() != tag) {
+                return false;
+            }
+        }
+        if (in.readInt() != jars.size()) {
+            return false;
+        }
+        for (File jar : jars) {
+            if (!jar.getAbsolutePath().equals(in.readUTF()) || jar.length() != in.readLong()
+                    || jar.lastModified() != in.readLong()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
 
 
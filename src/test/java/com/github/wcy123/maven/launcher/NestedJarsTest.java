@@ -0,0 +1,174 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+/**
+ * Walks the directories of a fat jar the way Spring's
+ * <code>PathMatchingResourcePatternResolver</code> does: the root directory is looked up through
+ * the class loader, then the entries of the {@link JarFile} of its {@link JarURLConnection} which
+ * are under the entry of the connection are read relative to the root.
+ */
+public class NestedJarsTest extends TestCase {
+    private File directory;
+    private File fatJar;
+    private List<URL> members;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = TestFiles.createTempDirectory("nested-jars-");
+        fatJar = new File(directory, "app.jar");
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Spring-Boot-Classes", "BOOT-INF/classes/");
+        manifest.getMainAttributes().putValue("Spring-Boot-Lib", "BOOT-INF/lib/");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(fatJar), manifest)) {
+            write(out, "BOOT-INF/classes/walk/a.txt", "a");
+            write(out, "BOOT-INF/classes/walk/sub/b.txt", "b");
+            write(out, "BOOT-INF/classes/other/c.txt", "c");
+            stored(out, "BOOT-INF/lib/lib.jar", jar("libwalk/d.txt", "d"));
+        }
+        try (JarFile jar = new JarFile(fatJar)) {
+            members = NestedJars.getMembers(fatJar, jar.getManifest());
+        }
+        assertEquals(2, members.size());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(directory);
+    }
+
+    public void testWalkDirectoryOfClasses() throws Exception {
+        final SharedUrlClassLoader group = create();
+        try {
+            final URL root = group.getResource("walk/");
+            assertNotNull(root);
+            assertEquals(members.get(0) + "walk/", root.toString());
+            final JarURLConnection connection = (JarURLConnection) root.openConnection();
+            assertEquals("walk/", connection.getEntryName());
+            assertEquals("walk/", connection.getJarEntry().getName());
+            assertEquals("jar:" + fatJar.toURI().toURL() + "!/BOOT-INF/classes",
+                    connection.getJarFileURL().toString());
+            final List<String> found = walk(root, connection);
+            assertEquals(TestFiles.list("a.txt=a", "sub/b.txt=b"), found);
+        } finally {
+            group.close();
+        }
+    }
+
+    public void testWalkDirectoryOfNestedJar() throws Exception {
+        final SharedUrlClassLoader group = create();
+        try {
+            final URL root = group.getResource("libwalk/");
+            assertNotNull(root);
+            final JarURLConnection connection = (JarURLConnection) root.openConnection();
+            assertEquals("jar:" + fatJar.toURI().toURL() + "!/BOOT-INF/lib/lib.jar",
+                    connection.getJarFileURL().toString());
+            assertEquals(TestFiles.list("d.txt=d"), walk(root, connection));
+            final JarURLConnection member =
+                    (JarURLConnection) members.get(1).openConnection();
+            assertNull(member.getEntryName());
+            assertNull(member.getJarEntry());
+            assertNotNull(member.getJarFile().getJarEntry("libwalk/d.txt"));
+        } finally {
+            group.close();
+        }
+    }
+
+    public void testMembersAreForgottenWhenClosed() throws Exception {
+        final SharedUrlClassLoader group = create();
+        assertTrue(NestedJars.isNested(members.get(0)));
+        group.close();
+        for (URL member : members) {
+            assertFalse(NestedJars.isNested(member));
+        }
+    }
+
+    /**
+     * @return a group whose members are closed with it.
+     */
+    private SharedUrlClassLoader create() throws IOException {
+        final URL[] urls = members.toArray(new URL[0]);
+        return SharedUrlClassLoader.create(urls, null, urls.length);
+    }
+
+    /**
+     * @return the path relative to <code>root</code> and the content of each entry under it.
+     */
+    private static List<String> walk(URL root, JarURLConnection connection) throws IOException {
+        final String rootEntry = connection.getJarEntry().getName();
+        final List<String> ret = new ArrayList<>();
+        final Enumeration<JarEntry> entries = connection.getJarFile().entries();
+        while (entries.hasMoreElements()) {
+            final String name = entries.nextElement().getName();
+            if (name.startsWith(rootEntry) && !name.endsWith("/")) {
+                final String relative = name.substring(rootEntry.length());
+                ret.add(relative + "=" + read(new URL(root, relative)));
+            }
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private static String read(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void write(JarOutputStream out, String name, String content)
+            throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+
+    /**
+     * Writes a nested jar uncompressed, as a fat jar must.
+     */
+    private static void stored(JarOutputStream out, String name, byte[] content)
+            throws IOException {
+        final JarEntry entry = new JarEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static byte[] jar(String name, String content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(bytes)) {
+            write(out, name, content);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.apache.maven.shared.artifact.ArtifactCoordinate;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolver;
+import org.apache.maven.shared.artifact.resolve.ArtifactResolverException;
+import org.apache.maven.shared.artifact.resolve.ArtifactResult;
+import org.apache.maven.shared.dependencies.DefaultDependableCoordinate;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+/**
+ * Resolves a small closure from a repository in a temporary directory.
+ *
+ * The repository is the local repository of the session, there is no connector to download from
+ * a remote one in the test class path. The closure is root -> (a -> c), (b -> d).
+ */
+public class ParallelArtifactResolverTest extends TestCase {
+    private static final String GROUP = "test.resolver";
+
+    private File repository;
+    private RepositorySystem repositorySystem;
+    private ProjectBuildingRequest buildingRequest;
+
+    @Override
+    protected void setUp() throws Exception {
+        repository = TestFiles.createTempDirectory("resolver-");
+        deploy("root", "a", "b");
+        deploy("a", "c");
+        deploy("b", "d");
+        deploy("c");
+        deploy("d");
+        repositorySystem =
+                MavenRepositorySystemUtils.newServiceLocator().getService(RepositorySystem.class);
+        final DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        session.setOffline(true);
+        session.setLocalRepositoryManager(repositorySystem.newLocalRepositoryManager(session,
+                new LocalRepository(repository)));
+        buildingRequest = new DefaultProjectBuildingRequest();
+        buildingRequest.setRepositorySession(session);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(repository);
+    }
+
+    public void testResolveKeepsTheSequentialOrder() throws Exception {
+        final List<Artifact> closure = collect();
+        assertEquals(TestFiles.list("root", "a", "c", "b", "d"), artifactIds(closure));
+        final List<Artifact> sequential = newResolver(1).resolve(buildingRequest, closure);
+        final List<Artifact> parallel = newResolver(4).resolve(buildingRequest, closure);
+        assertEquals(artifactIds(closure), artifactIds(sequential));
+        assertEquals(artifactIds(sequential), artifactIds(parallel));
+        for (int i = 0; i < parallel.size(); ++i) {
+            assertEquals(sequential.get(i).getFile(), parallel.get(i).getFile());
+            assertTrue(parallel.get(i).getFile().isFile());
+        }
+    }
+
+    public void testMissingArtifactFails() throws Exception {
+        final List<Artifact> closure = collect();
+        assertTrue(jar(coordinates("d")).delete());
+        try {
+            newResolver(4).resolve(buildingRequest, closure);
+            fail("d is missing");
+        } catch (ArtifactResolverException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(GROUP + ":d"));
+        }
+    }
+
+    /**
+     * The closure cache must not keep a closure whose transitive dependency asks for a range,
+     * the range of the pom is the version constraint of its node.
+     */
+    public void testTransitiveRangeIsNotCacheable() throws Exception {
+        deploy("ranged", "b");
+        deploy("range-root", "a", "ranged");
+        rewriteDependencyVersion("ranged", "b", "[1.0,2.0)");
+        writeLocalMetadata("b");
+        final ParallelArtifactResolver resolver = newResolver(1);
+        assertTrue(ResolutionCache.isCacheable(
+                resolver.collectClosure(buildingRequest, coordinate("root"))));
+        assertFalse(ResolutionCache.isCacheable(
+                resolver.collectClosure(buildingRequest, coordinate("range-root"))));
+    }
+
+    private List<Artifact> collect() throws Exception {
+        return newResolver(1).collect(buildingRequest, coordinate("root"));
+    }
+
+    private static DefaultDependableCoordinate coordinate(String artifactId) {
+        final DefaultDependableCoordinate ret = new DefaultDependableCoordinate();
+        ret.setGroupId(GROUP);
+        ret.setArtifactId(artifactId);
+        ret.setVersion("1.0");
+        ret.setType("jar");
+        return ret;
+    }
+
+    /**
+     * @return a resolver which resolves the first artifact of the closure last.
+     */
+    private ParallelArtifactResolver newResolver(int threads) {
+        return new ParallelArtifactResolver(repositorySystem, new ArtifactResolver() {
+            @Override
+            public ArtifactResult resolveArtifact(ProjectBuildingRequest request,
+                    Artifact artifact) throws ArtifactResolverException {
+                try {
+                    Thread.sleep(artifact.getArtifactId().equals("root") ? 100 : 10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                try {
+                    final File file = repositorySystem.resolveArtifact(
+                            request.getRepositorySession(),
+                            new ArtifactRequest(RepositoryUtils.toArtifact(artifact), null, null))
+                            .getArtifact().getFile();
+                    final Artifact ret = RepositoryUtils.toArtifact(
+                            RepositoryUtils.toArtifact(artifact).setFile(file));
+                    return new ArtifactResult() {
+                        @Override
+                        public Artifact getArtifact() {
+                            return ret;
+                        }
+                    };
+                } catch (ArtifactResolutionException e) {
+                    throw new ArtifactResolverException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public ArtifactResult resolveArtifact(ProjectBuildingRequest request,
+                    ArtifactCoordinate coordinate) {
+                throw new UnsupportedOperationException();
+            }
+        }, threads);
+    }
+
+    private void deploy(String artifactId, String... dependencies) throws IOException {
+        final File pom = new File(coordinates(artifactId) + ".pom");
+        assertTrue(pom.getParentFile().mkdirs());
+        try (Writer writer =
+                new OutputStreamWriter(new FileOutputStream(pom), StandardCharsets.UTF_8)) {
+            writer.write("<project><modelVersion>4.0.0</modelVersion>\n");
+            writer.write("<groupId>" + GROUP + "</groupId><artifactId>" + artifactId
+                    + "</artifactId><version>1.0</version>\n<dependencies>\n");
+            for (String dependency : dependencies) {
+                writer.write("<dependency><groupId>" + GROUP + "</groupId><artifactId>"
+                        + dependency + "</artifactId><version>1.0</version></dependency>\n");
+            }
+            writer.write("</dependencies></project>\n");
+        }
+        new JarOutputStream(new FileOutputStream(jar(coordinates(artifactId)))).close();
+    }
+
+    private void rewriteDependencyVersion(String artifactId, String dependency, String version)
+            throws IOException {
+        final File pom = new File(coordinates(artifactId) + ".pom");
+        final String content = new String(Files.readAllBytes(pom.toPath()), StandardCharsets.UTF_8);
+        final String declared = "<artifactId>" + dependency + "</artifactId><version>1.0";
+        assertTrue(content.contains(declared));
+        TestFiles.write(pom, content.replace(declared,
+                "<artifactId>" + dependency + "</artifactId><version>" + version));
+    }
+
+    /**
+     * Lists the versions of <code>artifactId</code> for the ranges, as an install would.
+     */
+    private void writeLocalMetadata(String artifactId) throws IOException {
+        TestFiles.write(new File(repository, GROUP.replace('.', '/') + "/" + artifactId
+                + "/maven-metadata-local.xml"), "<metadata><groupId>" + GROUP
+                        + "</groupId><artifactId>" + artifactId + "</artifactId><versioning>"
+                        + "<versions><version>1.0</version></versions></versioning></metadata>\n");
+    }
+
+    /**
+     * @return the path of <code>artifactId</code> in {@link #repository}, without extension.
+     */
+    private String coordinates(String artifactId) {
+        return new File(repository, GROUP.replace('.', '/') + "/" + artifactId + "/1.0/"
+                + artifactId + "-1.0").getPath();
+    }
+
+    private static File jar(String coordinates) {
+        return new File(coordinates + ".jar");
+    }
+
+    private static List<String> artifactIds(List<Artifact> artifacts) {
+        final List<String> ret = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            ret.add(artifact.getArtifactId());
+        }
+        return ret;
+    }
+}
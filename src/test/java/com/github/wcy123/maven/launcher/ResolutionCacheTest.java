@@ -0,0 +1,65 @@
+package com.github.wcy123.maven.launcher;
+
+import junit.framework.TestCase;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+
+/**
+ * Checks which collected dependency graphs the closure cache keeps. The graphs are built by hand,
+ * the versions of the nodes are what their poms ask for.
+ */
+public class ResolutionCacheTest extends TestCase {
+    private final GenericVersionScheme versionScheme = new GenericVersionScheme();
+
+    public void testFixedGraphIsCacheable() throws Exception {
+        final DefaultDependencyNode root = node("root", "1.0");
+        final DefaultDependencyNode a = node("a", "1.0");
+        a.getChildren().add(node("c", "2.1"));
+        root.getChildren().add(a);
+        root.getChildren().add(node("b", "1.0"));
+        assertTrue(ResolutionCache.isCacheable(root));
+    }
+
+    public void testTransitiveRangeIsNotCacheable() throws Exception {
+        final DefaultDependencyNode root = node("root", "1.0");
+        final DefaultDependencyNode a = node("a", "1.0");
+        a.getChildren().add(node("c", "[2.0,3.0)"));
+        root.getChildren().add(a);
+        assertFalse(ResolutionCache.isCacheable(root));
+    }
+
+    public void testTransitiveMetaVersionIsNotCacheable() throws Exception {
+        for (String version : TestFiles.list("LATEST", "RELEASE", "1.1-SNAPSHOT")) {
+            final DefaultDependencyNode root = node("root", "1.0");
+            root.getChildren().add(node("a", "1.0"));
+            root.getChildren().add(node("b", version));
+            assertFalse(version, ResolutionCache.isCacheable(root));
+        }
+    }
+
+    /**
+     * A verbose graph may reach a node twice, the walk must end.
+     */
+    public void testCycleEnds() throws Exception {
+        final DefaultDependencyNode root = node("root", "1.0");
+        final DefaultDependencyNode a = node("a", "1.0");
+        a.getChildren().add(root);
+        root.getChildren().add(a);
+        assertTrue(ResolutionCache.isCacheable(root));
+    }
+
+    /**
+     * @param version the version the pom of the parent asks for, e.g. a range
+     */
+    private DefaultDependencyNode node(String artifactId, String version)
+            throws InvalidVersionSpecificationException {
+        final DefaultDependencyNode ret = new DefaultDependencyNode(new Dependency(
+                new DefaultArtifact("test.cache", artifactId, "jar", version), "compile"));
+        ret.setVersionConstraint(versionScheme.parseVersionConstraint(version));
+        return ret;
+    }
+}
@@ -0,0 +1,328 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+
+import junit.framework.TestCase;
+
+/**
+ * Loads the classes of a group from many threads at once.
+ *
+ * The classes are compiled into jars in a temporary directory, so that the system class loader,
+ * the parent of a group, does not have them. There are {@link #JARS} jars of
+ * {@link #CLASSES_PER_JAR} classes, and each class of a jar but the first extends the class of
+ * the same name in the previous jar, so that defining it defines its superclasses in the other
+ * jars while it holds its own lock. Two more jars hold a cycle: <code>cycle0.A</code> implements
+ * <code>cycle1.IB</code> and <code>cycle1.B</code> implements <code>cycle0.IA</code>.
+ *
+ * Each test copies the jars first, a group of new URLs does not find the classes a previous test
+ * defined in the shared loaders of its jars.
+ */
+public class SharedUrlClassLoaderTest extends TestCase {
+    private static final int JARS = 4;
+    private static final int OUTERS = 25;
+    private static final int NESTED = 40;
+    private static final int CLASSES_PER_JAR = OUTERS * NESTED;
+    private static final int THREADS = 16;
+    private static final int CYCLE_ROUNDS = 50;
+    private static final long TIMEOUT_MILLIS = 60000;
+
+    /**
+     * the compiled classes, shared by the tests.
+     */
+    private static File classes;
+    private static List<String> names;
+
+    private File directory;
+    private int copies;
+
+    @Override
+    protected void setUp() throws Exception {
+        synchronized (SharedUrlClassLoaderTest.class) {
+            if (classes == null) {
+                compileClasses();
+            }
+        }
+        directory = TestFiles.createTempDirectory("shared-loader-");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(directory);
+    }
+
+    public void testOneClassPerNameWhenLoadingConcurrently() throws Exception {
+        final SharedUrlClassLoader group = SharedUrlClassLoader.create(copyJars(""));
+        try {
+            final Map<String, Class<?>> loaded = loadConcurrently(names, group);
+            assertEquals(names.size(), loaded.size());
+            for (String name : names) {
+                final Class<?> aClass = loaded.get(name);
+                assertEquals(name, aClass.getName());
+                assertSame(aClass, group.loadClass(name));
+            }
+            for (int jar = 1; jar < JARS; ++jar) {
+                for (int i = 0; i < CLASSES_PER_JAR; i += NESTED - 1) {
+                    assertSame(loaded.get(className(jar - 1, i)),
+                            loaded.get(className(jar, i)).getSuperclass());
+                }
+            }
+        } finally {
+            group.close();
+        }
+    }
+
+    public void testGroupsShareTheClassesOfTheirJars() throws Exception {
+        final URL[] urls = copyJars("");
+        final SharedUrlClassLoader first = SharedUrlClassLoader.create(urls);
+        final SharedUrlClassLoader second = SharedUrlClassLoader.create(urls);
+        try {
+            final Map<String, Class<?>> loaded = loadConcurrently(names, first, second);
+            for (String name : names) {
+                assertSame(loaded.get(name), first.loadClass(name));
+                assertSame(loaded.get(name), second.loadClass(name));
+            }
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * <code>lib.L</code> calls <code>dep.D</code>, which two launches have in different versions.
+     * Each launch must see the version it asked for, a launch with the same jars shares the loader
+     * of <code>lib.jar</code> with the first one.
+     */
+    public void testGroupsOfOtherVersionsDoNotShareTheirJars() throws Exception {
+        final File src = new File(directory, "src");
+        final File d1 = TestFiles.write(new File(src, "v1/dep/D.java"), "package dep;\n"
+                + "public class D {\n    public static String version() {\n"
+                + "        return \"1\";\n    }\n}\n");
+        final File d2 = TestFiles.write(new File(src, "v2/dep/D.java"), "package dep;\n"
+                + "public class D {\n    public static String version() {\n"
+                + "        return \"2\";\n    }\n}\n");
+        final File l = TestFiles.write(new File(src, "lib/lib/L.java"),
+                "package lib;\npublic class L {\n    public static String version() {\n"
+                        + "        return dep.D.version();\n    }\n}\n");
+        TestFiles.compile(new File(directory, "v1"), Arrays.asList(d1));
+        TestFiles.compile(new File(directory, "v2"), Arrays.asList(d2));
+        TestFiles.compile(new File(directory, "lib"), Arrays.asList(l, d1));
+        final URL lib = TestFiles.jar(new File(directory, "lib.jar"), new File(directory, "lib"),
+                "lib").toURI().toURL();
+        final URL v1 = TestFiles.jar(new File(directory, "dep-1.jar"), new File(directory, "v1"),
+                "dep").toURI().toURL();
+        final URL v2 = TestFiles.jar(new File(directory, "dep-2.jar"), new File(directory, "v2"),
+                "dep").toURI().toURL();
+        final SharedUrlClassLoader first = SharedUrlClassLoader.create(new URL[] {lib, v1});
+        final SharedUrlClassLoader second = SharedUrlClassLoader.create(new URL[] {lib, v2});
+        final SharedUrlClassLoader third = SharedUrlClassLoader.create(new URL[] {v1, lib});
+        try {
+            final Class<?> l1 = Class.forName("lib.L", true, first);
+            final Class<?> l2 = Class.forName("lib.L", true, second);
+            assertEquals("1", l1.getMethod("version").invoke(null));
+            assertEquals("2", l2.getMethod("version").invoke(null));
+            assertNotSame(l1, l2);
+            assertSame(l1, Class.forName("lib.L", true, third));
+        } finally {
+            first.close();
+            second.close();
+            third.close();
+        }
+    }
+
+    /**
+     * Defining <code>cycle0.A</code> locks its name in the loader of the first cycle jar, then
+     * <code>cycle1.IB</code> in the loader of the second one. Defining <code>cycle1.B</code> takes
+     * the locks of the loaders the other way around.
+     */
+    public void testCrossJarCycleDoesNotDeadlock() throws Exception {
+        final List<String> forward = TestFiles.list("cycle0.A", "cycle1.B");
+        final List<String> backward = TestFiles.list("cycle1.B", "cycle0.A");
+        for (int round = 0; round < CYCLE_ROUNDS; ++round) {
+            final SharedUrlClassLoader group = SharedUrlClassLoader.create(copyJars("q"));
+            try {
+                final Map<String, Class<?>> loaded =
+                        loadConcurrently(forward, backward, group);
+                assertSame(loaded.get("cycle0.A").getInterfaces()[0].getClassLoader(),
+                        loaded.get("cycle1.B").getClassLoader());
+            } finally {
+                group.close();
+            }
+        }
+    }
+
+    private static String className(int jar, int index) {
+        return "p" + jar + ".Outer" + (index / NESTED) + "$C" + (index % NESTED);
+    }
+
+    /**
+     * Loads every class of <code>names</code> on each of {@link #THREADS} threads, in an order of
+     * its own, alternating between <code>groups</code>.
+     *
+     * @return the class of each name, which every thread must have got.
+     */
+    private static Map<String, Class<?>> loadConcurrently(List<String> names,
+            SharedUrlClassLoader... groups) throws Exception {
+        final List<List<String>> orders = new ArrayList<>();
+        for (int i = 0; i < THREADS; ++i) {
+            final List<String> order = new ArrayList<>(names);
+            Collections.shuffle(order, new Random(i));
+            orders.add(order);
+        }
+        return load(orders, groups);
+    }
+
+    /**
+     * Loads <code>first</code> on half of the threads and <code>second</code> on the others.
+     */
+    private static Map<String, Class<?>> loadConcurrently(List<String> first,
+            List<String> second, SharedUrlClassLoader group) throws Exception {
+        final List<List<String>> orders = new ArrayList<>();
+        for (int i = 0; i < THREADS; ++i) {
+            orders.add(i % 2 == 0 ? first : second);
+        }
+        return load(orders, group);
+    }
+
+    /**
+     * Loads the names of each order on a thread of its own, alternating between
+     * <code>groups</code>.
+     */
+    private static Map<String, Class<?>> load(List<List<String>> orders,
+            SharedUrlClassLoader... groups) throws Exception {
+        final Map<String, Class<?>> loaded = new ConcurrentHashMap<>();
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        final CyclicBarrier start = new CyclicBarrier(orders.size());
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < orders.size(); ++i) {
+            final List<String> order = orders.get(i);
+            final SharedUrlClassLoader group = groups[i % groups.length];
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (String name : order) {
+                            final Class<?> aClass = Class.forName(name, false, group);
+                            final Class<?> previous = loaded.putIfAbsent(name, aClass);
+                            if (previous != null && previous != aClass) {
+                                failures.add(new AssertionError("two classes named " + name));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        // a LinkageError is a duplicate class definition.
+                        failures.add(e);
+                    }
+                }
+            }, "loader-" + i);
+            // a deadlocked thread must not keep the test JVM alive.
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            assertFalse(thread.getName() + " is deadlocked", thread.isAlive());
+        }
+        if (!failures.isEmpty()) {
+            final AssertionError error = new AssertionError(failures.size() + " failures");
+            error.initCause(failures.peek());
+            throw error;
+        }
+        return loaded;
+    }
+
+    /**
+     * @return the URLs of new copies of the jars whose names start with <code>prefix</code>,
+     *         in classpath order.
+     */
+    private URL[] copyJars(String prefix) throws IOException {
+        final File dir = new File(directory, "copy" + copies++);
+        assertTrue(dir.mkdirs());
+        final File[] jars = new File(classes.getParentFile(), "jars").listFiles();
+        assertNotNull(jars);
+        final List<File> sorted = new ArrayList<>();
+        for (File jar : jars) {
+            if (jar.getName().startsWith(prefix)) {
+                sorted.add(jar);
+            }
+        }
+        Collections.sort(sorted);
+        final URL[] ret = new URL[sorted.size()];
+        for (int i = 0; i < ret.length; ++i) {
+            final File copy = new File(dir, sorted.get(i).getName());
+            Files.copy(sorted.get(i).toPath(), copy.toPath());
+            ret[i] = copy.toURI().toURL();
+        }
+        return ret;
+    }
+
+    /**
+     * Compiles the classes once for all the tests, into a directory which is deleted when the
+     * test JVM exits.
+     */
+    private static void compileClasses() throws IOException {
+        final File root = TestFiles.createTempDirectory("shared-loader-classes-");
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TestFiles.delete(root);
+            }
+        }));
+        final File src = new File(root, "src");
+        final List<File> sources = new ArrayList<>();
+        final List<String> ret = new ArrayList<>();
+        for (int jar = 0; jar < JARS; ++jar) {
+            for (int outer = 0; outer < OUTERS; ++outer) {
+                final StringBuilder sb = new StringBuilder();
+                sb.append("package p").append(jar).append(";\npublic class Outer").append(outer)
+                        .append(" {\n");
+                for (int nested = 0; nested < NESTED; ++nested) {
+                    sb.append("    public static class C").append(nested);
+                    if (jar > 0) {
+                        sb.append(" extends p").append(jar - 1).append(".Outer").append(outer)
+                                .append(".C").append(nested);
+                    }
+                    sb.append(" {\n    }\n");
+                    ret.add(className(jar, outer * NESTED + nested));
+                }
+                sb.append("}\n");
+                sources.add(TestFiles.write(
+                        new File(src, "p" + jar + "/Outer" + outer + ".java"), sb.toString()));
+            }
+        }
+        sources.add(TestFiles.write(new File(src, "cycle0/IA.java"),
+                "package cycle0;\npublic interface IA {\n}\n"));
+        sources.add(TestFiles.write(new File(src, "cycle0/A.java"),
+                "package cycle0;\npublic class A implements cycle1.IB {\n}\n"));
+        sources.add(TestFiles.write(new File(src, "cycle1/IB.java"),
+                "package cycle1;\npublic interface IB {\n}\n"));
+        sources.add(TestFiles.write(new File(src, "cycle1/B.java"),
+                "package cycle1;\npublic class B implements cycle0.IA {\n}\n"));
+        ret.addAll(TestFiles.list("cycle0.IA", "cycle0.A", "cycle1.IB", "cycle1.B"));
+        final File compiled = new File(root, "classes");
+        TestFiles.compile(compiled, sources);
+        final File jars = new File(root, "jars");
+        assertTrue(jars.mkdirs());
+        for (int jar = 0; jar < JARS; ++jar) {
+            TestFiles.jar(new File(jars, "p" + jar + ".jar"), compiled, "p" + jar);
+        }
+        TestFiles.jar(new File(jars, "q0-cycle0.jar"), compiled, "cycle0");
+        TestFiles.jar(new File(jars, "q1-cycle1.jar"), compiled, "cycle1");
+        names = ret;
+        classes = compiled;
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.wcy123.maven.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import junit.framework.Assert;
+
+/**
+ * Files and lists the tests build their fixtures from.
+ */
+final class TestFiles {
+    private TestFiles() {
+    }
+
+    /**
+     * @return a new empty directory, remove it with {@link #delete}.
+     */
+    static File createTempDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    /**
+     * Deletes <code>file</code>, and its content if it is a directory.
+     */
+    static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    static List<String> list(String... values) {
+        final List<String> ret = new ArrayList<>();
+        Collections.addAll(ret, values);
+        return ret;
+    }
+
+    /**
+     * Writes <code>content</code> to <code>file</code> in UTF-8, creating its directory.
+     */
+    static File write(File file, String content) throws IOException {
+        final File dir = file.getParentFile();
+        Assert.assertTrue(dir.isDirectory() || dir.mkdirs());
+        try (Writer writer =
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        return file;
+    }
+
+    /**
+     * Compiles <code>sources</code> into <code>classes</code> with the compiler of the JDK which
+     * runs the tests.
+     */
+    static void compile(File classes, List<File> sources) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("the tests need a JDK", compiler);
+        Assert.assertTrue(classes.isDirectory() || classes.mkdirs());
+        final List<String> arguments =
+                new ArrayList<>(Arrays.asList("-d", classes.getPath(), "-nowarn"));
+        for (File source : sources) {
+            arguments.add(source.getPath());
+        }
+        Assert.assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+    }
+
+    /**
+     * Writes the classes of <code>packages</code>, which are compiled into <code>classes</code>,
+     * to <code>jar</code>.
+     */
+    static File jar(File jar, File classes, String... packages) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (String packageName : packages) {
+                final String path = packageName.replace('.', '/');
+                out.putNextEntry(new JarEntry(path + "/"));
+                out.closeEntry();
+                final File[] files = new File(classes, path).listFiles();
+                Assert.assertNotNull(packageName, files);
+                for (File file : files) {
+                    out.putNextEntry(new JarEntry(path + "/" + file.getName()));
+                    out.write(Files.readAllBytes(file.toPath()));
+                    out.closeEntry();
+                }
+            }
+        }
+        return jar;
+    }
+}